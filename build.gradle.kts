@@ -9,6 +9,7 @@ buildscript {
 plugins {
     `java-library`
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 allprojects {
@@ -59,6 +60,18 @@ dependencies {
     shade(project("expressions").also { it.isTransitive = false })
 }
 
+dependencies {
+    jmh(mixin())
+    jmh(asm())
+    jmh(apacheCommons())
+    jmh(project("expressions"))
+}
+
+jmh {
+    // Allocations per call are what the operation benchmarks are about.
+    profilers.add("gc")
+}
+
 tasks.named<ShadowJar>("shadowJar") {
     configurations = listOf(shade, shadeOnly)
     archiveClassifier = "fat"
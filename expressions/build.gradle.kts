@@ -11,6 +11,13 @@ dependencies {
     api(apacheCommons())
     api(antlrRuntime())
     antlr("org.antlr:antlr4:4.13.1")
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.withType<Jar> {
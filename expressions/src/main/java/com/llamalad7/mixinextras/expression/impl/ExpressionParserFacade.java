@@ -5,16 +5,28 @@ import com.llamalad7.mixinextras.lib.grammar.expressions.ExpressionParser;
 import com.llamalad7.mixinextras.lib.grammar.expressions.ExpressionParser.*;
 import com.llamalad7.mixinextras.expression.impl.ast.expressions.*;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.*;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionProfiler;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
 
-import java.util.BitSet;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class ExpressionParserFacade {
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+    /**
+     * Parsed expressions are immutable, so identical sources can share the same tree across all injectors.
+     */
+    private static final Map<String, Expression> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            }
+    );
+
     private final String expression;
     private boolean hasExplicitCapture = false;
 
@@ -23,6 +35,20 @@ public class ExpressionParserFacade {
     }
 
     public static Expression parse(String input) {
+        Expression cached = CACHE.get(input);
+        if (cached != null) {
+            ExpressionProfiler.count("expression cache hits");
+            return cached;
+        }
+        return CACHE.computeIfAbsent(input, k -> {
+            long start = ExpressionProfiler.now();
+            Expression parsed = parseUncached(input);
+            ExpressionProfiler.count("expressions parsed", start);
+            return parsed;
+        });
+    }
+
+    private static Expression parseUncached(String input) {
         ExpressionLexer lexer = new ExpressionLexer(CharStreams.fromString(input));
         setupErrorListeners(lexer, input);
         ExpressionParser parser = new ExpressionParser(new CommonTokenStream(lexer));
@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionDecorations;
 import org.objectweb.asm.Opcodes;
@@ -10,15 +11,35 @@ import org.objectweb.asm.Type;
 public class ArrayAccessExpression extends SimpleExpression {
     public final Expression arr;
     public final Expression index;
+    private final Expression[] inputs;
 
     public ArrayAccessExpression(ExpressionSource src, Expression arr, Expression index) {
         super(src);
         this.arr = arr;
         this.index = index;
+        this.inputs = new Expression[]{arr, index};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.IALOAD, Opcodes.SALOAD);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         switch (node.getInsn().getOpcode()) {
             case Opcodes.IALOAD:
             case Opcodes.LALOAD:
@@ -28,9 +49,9 @@ public class ArrayAccessExpression extends SimpleExpression {
             case Opcodes.BALOAD:
             case Opcodes.CALOAD:
             case Opcodes.SALOAD:
-                return inputsMatch(node, ctx, arr, index);
+                return matchInputs(node, ctx, inputs);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.ArrayCreationInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -18,24 +19,41 @@ import java.util.List;
 public class ArrayLiteralExpression extends SimpleExpression {
     public final TypeIdentifier elementType;
     public final List<Expression> values;
+    private final Expression[] inputs;
 
     public ArrayLiteralExpression(ExpressionSource src, TypeIdentifier elementType, List<Expression> values) {
         super(src);
         this.elementType = elementType;
         this.values = values;
+        this.inputs = values.toArray(new Expression[0]);
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.decoration(FlowDecorations.ARRAY_CREATION_INFO);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         ArrayCreationInfo creation = node.getDecoration(FlowDecorations.ARRAY_CREATION_INFO);
         if (creation == null) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         Type newElementType = getElementType(node.getInsn());
         if (newElementType == null || !elementType.matches(ctx.pool, newElementType)) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return inputsMatch(node, ctx, ctx.allowIncompleteListInputs, values.toArray(new Expression[0]));
+        return matchInputs(node, ctx, ctx.allowIncompleteListInputs, inputs);
     }
 
     private Type getElementType(AbstractInsnNode insn) {
@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionDecorations;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
@@ -12,16 +13,36 @@ public class ArrayStoreExpression extends Expression {
     public final Expression arr;
     public final Expression index;
     public final Expression value;
+    private final Expression[] inputs;
 
     public ArrayStoreExpression(ExpressionSource src, Expression arr, Expression index, Expression value) {
         super(src);
         this.arr = arr;
         this.index = index;
         this.value = value;
+        this.inputs = new Expression[]{arr, index, value};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.IASTORE, Opcodes.SASTORE);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         switch (node.getInsn().getOpcode()) {
             case Opcodes.IASTORE:
             case Opcodes.LASTORE:
@@ -31,9 +52,9 @@ public class ArrayStoreExpression extends Expression {
             case Opcodes.BASTORE:
             case Opcodes.CASTORE:
             case Opcodes.SASTORE:
-                return inputsMatch(node, ctx, arr, index, value);
+                return matchInputs(node, ctx, inputs);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 
     @Override
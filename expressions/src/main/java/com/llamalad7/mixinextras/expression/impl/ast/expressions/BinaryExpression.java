@@ -4,6 +4,7 @@ import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionDecorations;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionUtil;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.StringConcatInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -14,49 +15,84 @@ public class BinaryExpression extends SimpleExpression {
     public final Expression left;
     public final Operator operator;
     public final Expression right;
+    private final Expression[] inputs;
 
     public BinaryExpression(ExpressionSource src, Expression left, Operator operator, Expression right) {
         super(src);
         this.left = left;
         this.operator = operator;
         this.right = right;
+        this.inputs = new Expression[]{left, right};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        if (operator.matches(node.getInsn()) && inputsMatch(node, ctx, left, right)) {
-            return true;
+    protected FlowShape computeRootShape() {
+        FlowShape shape = FlowShape.opcodes(operator.opcodes);
+        if (operator == Operator.PLUS) {
+            shape = shape.or(FlowShape.decoration(FlowDecorations.STRING_CONCAT_INFO));
+        }
+        return shape;
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        // String concatenations aren't matched against their direct inputs.
+        return operator == Operator.PLUS ? null : inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
+        if (operator.matches(node.getInsn())) {
+            MatchResult result = matchInputs(node, ctx, inputs);
+            if (result != MatchResult.NO_MATCH) {
+                return result;
+            }
         }
         StringConcatInfo concat = node.getDecoration(FlowDecorations.STRING_CONCAT_INFO);
         if (operator != Operator.PLUS || concat == null) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         if (node == concat.toStringCall) {
             node = node.getInput(0);
+            if (node.isComplex()) {
+                return MatchResult.COMPLEX;
+            }
         }
-        if (!right.matches(node.getInput(1), ctx)) {
-            return false;
+        MatchResult rightResult = matchChild(right, node.getInput(1), ctx);
+        if (rightResult != MatchResult.MATCH) {
+            return rightResult;
         }
         if (concat.isFirstConcat) {
-            return left.matches(concat.initialComponent, ctx);
+            return matchChild(left, concat.initialComponent, ctx);
         }
         Expression innerLeft = ExpressionUtil.skipCapturesDown(left);
         if (innerLeft instanceof WildcardExpression) {
             if (!(left instanceof CapturingExpression)) {
-                return true;
+                return MatchResult.MATCH;
+            }
+            if (node.getInput(0).isComplex()) {
+                return MatchResult.COMPLEX;
             }
             // The wildcard will match the concatenation to the left, but won't decorate it as a concat, so we do it
             // ourselves.
             checkSupportsStringConcat(ctx.type);
             ctx.decorateInjectorSpecific(node.getInput(0).getInsn(), ExpressionDecorations.IS_STRING_CONCAT_EXPRESSION, true);
             // Do the capture:
-            return left.matches(node.getInput(0), ctx);
+            return matchChild(left, node.getInput(0), ctx);
         }
         if (innerLeft instanceof BinaryExpression && ((BinaryExpression) innerLeft).operator == Operator.PLUS) {
             // Continue matching the concat chain.
-            return left.matches(node.getInput(0), ctx);
+            return matchChild(left, node.getInput(0), ctx);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -18,11 +19,26 @@ public class BoundMethodReferenceExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.decoration(FlowDecorations.LMF_INFO).withMember(name);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return new Expression[]{receiver};
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return new Expression[]{receiver};
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         LMFInfo info = node.getDecoration(FlowDecorations.LMF_INFO);
-        if (info == null || info.type != LMFInfo.Type.BOUND_METHOD) {
-            return false;
+        if (info == null || info.type != LMFInfo.Type.BOUND_METHOD || !name.matches(ctx.pool, node)) {
+            return MatchResult.NO_MATCH;
         }
-        return name.matches(ctx.pool, node) && receiver.matches(node.getInput(0), ctx);
+        return matchChild(receiver, node.getInput(0), ctx);
     }
 }
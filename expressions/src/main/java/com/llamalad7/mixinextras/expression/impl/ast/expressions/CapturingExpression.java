@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 
 public class CapturingExpression extends SimpleExpression {
@@ -13,11 +14,30 @@ public class CapturingExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        boolean matches = expression.matches(node, ctx);
-        if (matches) {
+    protected FlowShape computeRootShape() {
+        return expression.getRootShape();
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return new Expression[]{expression};
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return expression.getInputExpressions();
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        MatchResult result = expression.match(node, ctx);
+        if (result == MatchResult.MATCH) {
+            if (node.isComplex()) {
+                // There is no single instruction to target.
+                return MatchResult.COMPLEX;
+            }
             expression.capture(node, ctx);
         }
-        return matches;
+        return result;
     }
 }
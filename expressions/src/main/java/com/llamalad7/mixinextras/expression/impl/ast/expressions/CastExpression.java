@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionDecorations;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
@@ -14,17 +15,40 @@ import org.objectweb.asm.tree.TypeInsnNode;
 public class CastExpression extends SimpleExpression {
     public final TypeIdentifier type;
     public final Expression expression;
+    private final Expression[] inputs;
 
     public CastExpression(ExpressionSource src, TypeIdentifier type, Expression expression) {
         super(src);
         this.type = type;
         this.expression = expression;
+        this.inputs = new Expression[]{expression};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.I2L, Opcodes.I2S).or(FlowShape.opcodes(Opcodes.CHECKCAST));
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         Type castType = getCastType(node.getInsn());
-        return castType != null && type.matches(ctx.pool, castType) && inputsMatch(node, ctx, expression);
+        if (castType == null || !type.matches(ctx.pool, castType)) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, inputs);
     }
 
     @Override
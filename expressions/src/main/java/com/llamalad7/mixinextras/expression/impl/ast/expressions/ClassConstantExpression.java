@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -19,9 +20,17 @@ public class ClassConstantExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.LDC, Opcodes.GETSTATIC);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         Type cstType = getConstantType(node.getInsn());
-        return cstType != null && type.matches(ctx.pool, cstType);
+        return MatchResult.of(cstType != null && type.matches(ctx.pool, cstType));
     }
 
     private Type getConstantType(AbstractInsnNode insn) {
@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ComparisonInfo;
 import com.llamalad7.mixinextras.expression.impl.utils.ComplexComparisonInfo;
@@ -17,17 +18,40 @@ public class ComparisonExpression extends Expression {
     public final Expression left;
     public final Operator operator;
     public final Expression right;
+    private final Expression[] inputs;
 
     public ComparisonExpression(ExpressionSource src, Expression left, Operator operator, Expression right) {
         super(src);
         this.left = left;
         this.operator = operator;
         this.right = right;
+        this.inputs = new Expression[]{left, right};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        return operator.matches(node, ctx) && inputsMatch(node, ctx, left, right);
+    protected FlowShape computeRootShape() {
+        return operator.getShape();
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
+        if (!operator.matches(node, ctx)) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, inputs);
     }
 
     @Override
@@ -70,6 +94,10 @@ public class ComparisonExpression extends Expression {
             this(directObject, directInt, invertedObject, invertedInt, fcmp, dcmp, fcmp, dcmp);
         }
 
+        public FlowShape getShape() {
+            return FlowShape.opcodes(directObject, directInt, invertedObject, invertedInt, LCMP, fcmp1, dcmp1, fcmp2, dcmp2);
+        }
+
         public boolean matches(FlowValue node, ExpressionContext ctx) {
             AbstractInsnNode insn = node.getInsn();
             int opcode = insn.getOpcode();
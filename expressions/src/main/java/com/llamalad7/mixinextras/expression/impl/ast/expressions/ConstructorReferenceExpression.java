@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -17,11 +18,16 @@ public class ConstructorReferenceExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.decoration(FlowDecorations.LMF_INFO);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         LMFInfo info = node.getDecoration(FlowDecorations.LMF_INFO);
         if (info == null || info.type != LMFInfo.Type.INSTANTIATION) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return type.matches(ctx.pool, Type.getObjectType(info.impl.getOwner()));
+        return MatchResult.of(type.matches(ctx.pool, Type.getObjectType(info.impl.getOwner())));
     }
 }
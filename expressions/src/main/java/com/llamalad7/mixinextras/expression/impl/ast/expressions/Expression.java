@@ -2,11 +2,21 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public abstract class Expression {
+    private static final Expression[] NO_CHILDREN = new Expression[0];
+
     protected final ExpressionSource src;
+    private FlowShape rootShape;
+    private Set<String> requiredMembers;
+    private Boolean captureFree;
 
     public Expression(ExpressionSource src) {
         this.src = src;
@@ -16,38 +26,127 @@ public abstract class Expression {
         return src;
     }
 
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        return false;
+    /**
+     * Tries this expression against the given node. Expressions must not look into the instruction or inputs of a
+     * {@link FlowValue#isComplex() complex} node, and should answer {@link MatchResult#COMPLEX} if they would need to.
+     */
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        return MatchResult.NO_MATCH;
+    }
+
+    public final boolean matches(FlowValue node, ExpressionContext ctx) {
+        return match(node, ctx) == MatchResult.MATCH;
+    }
+
+    /**
+     * Describes the nodes this expression could match at its root. Nodes outside of this shape will not be tried.
+     */
+    public final FlowShape getRootShape() {
+        FlowShape shape = rootShape;
+        if (shape == null) {
+            rootShape = shape = computeRootShape();
+        }
+        return shape;
+    }
+
+    protected FlowShape computeRootShape() {
+        return FlowShape.ANY;
+    }
+
+    /**
+     * @return the ids of every defined member which must be present in the target for this expression to match
+     */
+    public final Set<String> getRequiredMembers() {
+        Set<String> members = requiredMembers;
+        if (members == null) {
+            members = new HashSet<>();
+            String id = getRootShape().getMemberId();
+            if (id != null) {
+                members.add(id);
+            }
+            for (Expression child : getChildren()) {
+                members.addAll(child.getRequiredMembers());
+            }
+            requiredMembers = members = Collections.unmodifiableSet(members);
+        }
+        return members;
+    }
+
+    /**
+     * @return the sub-expressions which are matched, in order, against the inputs of the node this expression matches,
+     * or {@code null} if its sub-expressions aren't all matched that way
+     */
+    public Expression[] getInputExpressions() {
+        return null;
+    }
+
+    /**
+     * @return whether neither this expression nor any of its sub-expressions can capture anything
+     */
+    public final boolean isCaptureFree() {
+        Boolean result = captureFree;
+        if (result == null) {
+            result = !(this instanceof CapturingExpression);
+            for (Expression child : getChildren()) {
+                result &= child.isCaptureFree();
+            }
+            captureFree = result;
+        }
+        return result;
+    }
+
+    protected Expression[] getChildren() {
+        return NO_CHILDREN;
     }
 
     protected void capture(FlowValue node, ExpressionContext ctx) {
         ctx.capture(node, this);
     }
 
-    protected static boolean inputsMatch(FlowValue node, ExpressionContext ctx, Expression... values) {
-        return inputsMatch(node, ctx, false, values);
+    /**
+     * Matches a sub-expression, reusing its result from earlier in the session if that is allowed and worthwhile.
+     * Sub-expressions wrapped directly in a capture must not go through here, since their decorations are needed every
+     * time they match.
+     */
+    protected static MatchResult matchChild(Expression child, FlowValue node, ExpressionContext ctx) {
+        if (ctx.memo == null || child.getChildren().length == 0 || !child.isCaptureFree()) {
+            return child.match(node, ctx);
+        }
+        return ctx.memo.match(child, node, ctx);
+    }
+
+    protected static MatchResult matchInputs(FlowValue node, ExpressionContext ctx, Expression... values) {
+        return matchInputs(node, ctx, false, values);
     }
 
-    protected static boolean inputsMatch(FlowValue node, ExpressionContext ctx, boolean allowIncomplete, Expression... values) {
-        return inputsMatch(0, node, ctx, allowIncomplete, values);
+    protected static MatchResult matchInputs(FlowValue node, ExpressionContext ctx, boolean allowIncomplete, Expression... values) {
+        return matchInputs(0, node, ctx, allowIncomplete, values);
     }
 
-    protected static boolean inputsMatch(int start, FlowValue node, ExpressionContext ctx, Expression... values) {
-        return inputsMatch(start, node, ctx, false, values);
+    protected static MatchResult matchInputs(int start, FlowValue node, ExpressionContext ctx, Expression... values) {
+        return matchInputs(start, node, ctx, false, values);
     }
 
-    protected static boolean inputsMatch(int start, FlowValue node, ExpressionContext ctx, boolean allowIncomplete, Expression... values) {
+    protected static MatchResult matchInputs(int start, FlowValue node, ExpressionContext ctx, boolean allowIncomplete, Expression... values) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         int required = node.inputCount() - start;
         if (!(allowIncomplete && values.length < required) && values.length != required) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         for (int i = 0; i < values.length; i++) {
             Expression value = values[i];
-            if (!value.matches(node.getInput(i + start), ctx)) {
-                return false;
+            FlowValue input = node.getInput(i + start);
+            if (!value.getRootShape().accepts(input)) {
+                return MatchResult.NO_MATCH;
+            }
+            MatchResult result = matchChild(value, input, ctx);
+            if (result != MatchResult.MATCH) {
+                return result;
             }
         }
-        return true;
+        return MatchResult.MATCH;
     }
 
     public interface OutputSink {
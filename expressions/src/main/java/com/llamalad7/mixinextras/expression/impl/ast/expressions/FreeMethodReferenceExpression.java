@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -16,11 +17,16 @@ public class FreeMethodReferenceExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.decoration(FlowDecorations.LMF_INFO).withMember(name);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         LMFInfo info = node.getDecoration(FlowDecorations.LMF_INFO);
         if (info == null || info.type != LMFInfo.Type.FREE_METHOD) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return name.matches(ctx.pool, node);
+        return MatchResult.of(name.matches(ctx.pool, node));
     }
 }
@@ -3,21 +3,42 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 
 public class IdentifierAssignmentExpression extends Expression {
     public final MemberIdentifier identifier;
     public final Expression value;
+    private final Expression[] inputs;
 
     public IdentifierAssignmentExpression(ExpressionSource src, MemberIdentifier identifier, Expression value) {
         super(src);
         this.identifier = identifier;
         this.value = value;
+        this.inputs = new Expression[]{value};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.ISTORE, Opcodes.ASTORE).or(FlowShape.opcodes(Opcodes.PUTSTATIC)).withMember(identifier);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         switch (node.getInsn().getOpcode()) {
             case Opcodes.ISTORE:
             case Opcodes.LSTORE:
@@ -25,8 +46,11 @@ public class IdentifierAssignmentExpression extends Expression {
             case Opcodes.DSTORE:
             case Opcodes.ASTORE:
             case Opcodes.PUTSTATIC:
-                return identifier.matches(ctx.pool, node) && inputsMatch(node, ctx, value);
+                if (!identifier.matches(ctx.pool, node)) {
+                    return MatchResult.NO_MATCH;
+                }
+                return matchInputs(node, ctx, inputs);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 }
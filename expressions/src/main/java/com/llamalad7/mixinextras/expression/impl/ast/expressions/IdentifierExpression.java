@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 
@@ -14,7 +15,15 @@ public class IdentifierExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.ILOAD, Opcodes.ALOAD).or(FlowShape.opcodes(Opcodes.GETSTATIC)).withMember(identifier);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         switch (node.getInsn().getOpcode()) {
             case Opcodes.ILOAD:
             case Opcodes.LLOAD:
@@ -22,8 +31,8 @@ public class IdentifierExpression extends SimpleExpression {
             case Opcodes.DLOAD:
             case Opcodes.ALOAD:
             case Opcodes.GETSTATIC:
-                return ctx.pool.matchesMember(identifier, node);
+                return MatchResult.of(ctx.pool.matchesMember(identifier, node));
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 }
@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -12,20 +13,43 @@ import org.objectweb.asm.tree.TypeInsnNode;
 public class InstanceofExpression extends SimpleExpression {
     public final Expression expression;
     public final TypeIdentifier type;
+    private final Expression[] inputs;
 
     public InstanceofExpression(ExpressionSource src, Expression expression, TypeIdentifier type) {
         super(src);
         this.expression = expression;
         this.type = type;
+        this.inputs = new Expression[]{expression};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.INSTANCEOF);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         AbstractInsnNode insn = node.getInsn();
         if (insn.getOpcode() != Opcodes.INSTANCEOF) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         Type checkType = Type.getObjectType(((TypeInsnNode) insn).desc);
-        return type.matches(ctx.pool, checkType) && inputsMatch(node, ctx, expression);
+        if (!type.matches(ctx.pool, checkType)) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, inputs);
     }
 }
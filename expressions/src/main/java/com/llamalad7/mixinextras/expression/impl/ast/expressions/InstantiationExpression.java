@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.InstantiationInfo;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
@@ -12,20 +13,37 @@ import java.util.List;
 public class InstantiationExpression extends Expression {
     public final TypeIdentifier type;
     public final List<Expression> arguments;
+    private final Expression[] inputs;
 
     public InstantiationExpression(ExpressionSource src, TypeIdentifier type, List<Expression> arguments) {
         super(src);
         this.type = type;
         this.arguments = arguments;
+        this.inputs = arguments.toArray(new Expression[0]);
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.decoration(FlowDecorations.INSTANTIATION_INFO);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         InstantiationInfo instantiation = node.getDecoration(FlowDecorations.INSTANTIATION_INFO);
         if (instantiation == null || !type.matches(ctx.pool, instantiation.type)) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return inputsMatch(node, ctx, ctx.allowIncompleteListInputs, arguments.toArray(new Expression[0]));
+        return matchInputs(node, ctx, ctx.allowIncompleteListInputs, inputs);
     }
 
     @Override
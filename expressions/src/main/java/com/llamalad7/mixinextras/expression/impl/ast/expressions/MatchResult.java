@@ -0,0 +1,23 @@
+package com.llamalad7.mixinextras.expression.impl.ast.expressions;
+
+/**
+ * The outcome of trying an expression against a flow node.
+ */
+public enum MatchResult {
+    MATCH,
+    NO_MATCH,
+    /**
+     * The expression needed to look into a node which has no single instruction (see
+     * {@link com.llamalad7.mixinextras.expression.impl.flow.FlowValue#isComplex()}). This abandons the whole match,
+     * even where a different alternative could otherwise still have matched.
+     */
+    COMPLEX;
+
+    public static MatchResult of(boolean matched) {
+        return matched ? MATCH : NO_MATCH;
+    }
+
+    public boolean isMatch() {
+        return this == MATCH;
+    }
+}
@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionDecorations;
 import org.objectweb.asm.Opcodes;
@@ -12,22 +13,45 @@ import org.objectweb.asm.tree.AbstractInsnNode;
 public class MemberAccessExpression extends SimpleExpression {
     public final Expression receiver;
     public final MemberIdentifier name;
+    private final Expression[] inputs;
 
     public MemberAccessExpression(ExpressionSource src, Expression receiver, MemberIdentifier name) {
         super(src);
         this.receiver = receiver;
         this.name = name;
+        this.inputs = new Expression[]{receiver};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.GETFIELD, Opcodes.ARRAYLENGTH).withMember(name);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         AbstractInsnNode insn = node.getInsn();
         switch (insn.getOpcode()) {
             case Opcodes.GETFIELD:
             case Opcodes.ARRAYLENGTH:
-                return name.matches(ctx.pool, node) && inputsMatch(node, ctx, receiver);
+                if (!name.matches(ctx.pool, node)) {
+                    return MatchResult.NO_MATCH;
+                }
+                return matchInputs(node, ctx, inputs);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 
     @Override
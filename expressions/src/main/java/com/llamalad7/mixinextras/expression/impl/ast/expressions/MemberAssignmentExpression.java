@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -11,18 +12,40 @@ public class MemberAssignmentExpression extends Expression {
     public final Expression receiver;
     public final MemberIdentifier name;
     public final Expression value;
+    private final Expression[] inputs;
 
     public MemberAssignmentExpression(ExpressionSource src, Expression receiver, MemberIdentifier name, Expression value) {
         super(src);
         this.receiver = receiver;
         this.name = name;
         this.value = value;
+        this.inputs = new Expression[]{receiver, value};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.PUTFIELD).withMember(name);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         AbstractInsnNode insn = node.getInsn();
-        return insn.getOpcode() == Opcodes.PUTFIELD
-                && name.matches(ctx.pool, node) && inputsMatch(node, ctx, receiver, value);
+        if (insn.getOpcode() != Opcodes.PUTFIELD || !name.matches(ctx.pool, node)) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, inputs);
     }
 }
@@ -3,9 +3,11 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.MethodCallType;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.apache.commons.lang3.ArrayUtils;
+import org.objectweb.asm.Opcodes;
 
 import java.util.List;
 
@@ -13,23 +15,39 @@ public class MethodCallExpression extends SimpleExpression {
     public final Expression receiver;
     public final MemberIdentifier name;
     public final List<Expression> arguments;
+    private final Expression[] inputs;
 
     public MethodCallExpression(ExpressionSource src, Expression receiver, MemberIdentifier name, List<Expression> arguments) {
         super(src);
         this.receiver = receiver;
         this.name = name;
         this.arguments = arguments;
+        this.inputs = ArrayUtils.add(arguments.toArray(new Expression[0]), 0, receiver);
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL, Opcodes.INVOKEINTERFACE).withMember(name);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         if (!MethodCallType.NORMAL.matches(node)) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         if (!name.matches(ctx.pool, node)) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        Expression[] inputs = ArrayUtils.add(arguments.toArray(new Expression[0]), 0, receiver);
-        return inputsMatch(node, ctx, ctx.allowIncompleteListInputs, inputs);
+        return matchInputs(node, ctx, ctx.allowIncompleteListInputs, inputs);
     }
 }
@@ -3,6 +3,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.TypeIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
@@ -19,32 +20,52 @@ public class NewArrayExpression extends SimpleExpression {
     public final TypeIdentifier innerType;
     public final List<Expression> dims;
     public final int blankDims;
+    private final Expression[] inputs;
 
     public NewArrayExpression(ExpressionSource src, TypeIdentifier innerType, List<Expression> dims, int blankDims) {
         super(src);
         this.innerType = innerType;
         this.dims = dims;
         this.blankDims = blankDims;
+        this.inputs = dims.toArray(new Expression[0]);
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.NEWARRAY, Opcodes.ANEWARRAY, Opcodes.MULTIANEWARRAY);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         if (node.hasDecoration(FlowDecorations.ARRAY_CREATION_INFO)) {
             // While a creation *is* involved, it's not the kind we're trying to target.
-            return false;
+            return MatchResult.NO_MATCH;
+        }
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
         }
         Type newInnerType = getInnerType(node.getInsn());
         if (newInnerType == null) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         int newBlankDims = getBlankDims(node.getInsn());
         if (newBlankDims + node.inputCount() < blankDims + dims.size()) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
         if (!innerType.matches(ctx.pool, newInnerType)) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return inputsMatch(node, ctx, ctx.allowIncompleteListInputs, dims.toArray(new Expression[0]));
+        return matchInputs(node, ctx, ctx.allowIncompleteListInputs, inputs);
     }
 
     private Type getInnerType(AbstractInsnNode insn) {
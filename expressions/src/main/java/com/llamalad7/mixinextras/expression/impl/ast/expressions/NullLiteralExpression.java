@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 
@@ -11,7 +12,15 @@ public class NullLiteralExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        return node.getInsn().getOpcode() == Opcodes.ACONST_NULL;
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.ACONST_NULL);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
+        return MatchResult.of(node.getInsn().getOpcode() == Opcodes.ACONST_NULL);
     }
 }
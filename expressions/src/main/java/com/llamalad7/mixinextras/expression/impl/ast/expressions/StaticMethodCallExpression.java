@@ -3,25 +3,45 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.MethodCallType;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
+import org.objectweb.asm.Opcodes;
 
 import java.util.List;
 
 public class StaticMethodCallExpression extends SimpleExpression {
     public final MemberIdentifier name;
     public final List<Expression> arguments;
+    private final Expression[] inputs;
 
     public StaticMethodCallExpression(ExpressionSource src, MemberIdentifier name, List<Expression> arguments) {
         super(src);
         this.name = name;
         this.arguments = arguments;
+        this.inputs = arguments.toArray(new Expression[0]);
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        return MethodCallType.STATIC.matches(node)
-                && name.matches(ctx.pool, node)
-                && inputsMatch(node, ctx, ctx.allowIncompleteListInputs, arguments.toArray(new Expression[0]));
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.INVOKESTATIC).withMember(name);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (!MethodCallType.STATIC.matches(node) || !name.matches(ctx.pool, node)) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, ctx.allowIncompleteListInputs, inputs);
     }
 }
@@ -2,8 +2,10 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 public class StringLiteralExpression extends SimpleExpression {
@@ -21,11 +23,19 @@ public class StringLiteralExpression extends SimpleExpression {
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodeRange(Opcodes.ACONST_NULL, Opcodes.LDC);
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
         Object cst = ExpressionASMUtils.getConstant(node.getInsn());
         if (cst == null) {
-            return false;
+            return MatchResult.NO_MATCH;
         }
-        return cst.equals(value) || (node.typeMatches(Type.CHAR_TYPE) && cst.equals(charValue));
+        return MatchResult.of(cst.equals(value) || (node.typeMatches(Type.CHAR_TYPE) && cst.equals(charValue)));
     }
 }
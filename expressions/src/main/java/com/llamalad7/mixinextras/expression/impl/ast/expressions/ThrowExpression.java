@@ -2,19 +2,43 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 
 public class ThrowExpression extends Expression {
     public final Expression value;
+    private final Expression[] inputs;
 
     public ThrowExpression(ExpressionSource src, Expression value) {
         super(src);
         this.value = value;
+        this.inputs = new Expression[]{value};
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
-        return node.getInsn().getOpcode() == Opcodes.ATHROW && inputsMatch(node, ctx, value);
+    protected FlowShape computeRootShape() {
+        return FlowShape.opcodes(Opcodes.ATHROW);
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return inputs;
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
+        if (node.isComplex()) {
+            return MatchResult.COMPLEX;
+        }
+        if (node.getInsn().getOpcode() != Opcodes.ATHROW) {
+            return MatchResult.NO_MATCH;
+        }
+        return matchInputs(node, ctx, inputs);
     }
 }
@@ -2,6 +2,7 @@ package com.llamalad7.mixinextras.expression.impl.ast.expressions;
 
 import com.llamalad7.mixinextras.expression.impl.ExpressionSource;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowShape;
 import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
 import org.objectweb.asm.Opcodes;
 
@@ -9,33 +10,59 @@ import org.objectweb.asm.Opcodes;
 public class UnaryExpression extends SimpleExpression {
     public final Operator operator;
     public final Expression expression;
+    private final Expression[] inputs;
+    private final BinaryExpression bitwiseNot;
 
     public UnaryExpression(ExpressionSource src, Operator operator, Expression expression) {
         super(src);
         this.operator = operator;
         this.expression = expression;
+        this.inputs = new Expression[]{expression};
+        this.bitwiseNot = new BinaryExpression(
+                null,
+                expression,
+                BinaryExpression.Operator.BITWISE_XOR,
+                new IntLiteralExpression(null, -1)
+        );
     }
 
     @Override
-    public boolean matches(FlowValue node, ExpressionContext ctx) {
+    protected FlowShape computeRootShape() {
+        FlowShape shape = FlowShape.opcodes(Opcodes.IXOR, Opcodes.LXOR);
+        if (operator == Operator.MINUS) {
+            shape = shape.or(FlowShape.opcodes(Opcodes.INEG, Opcodes.LNEG, Opcodes.FNEG, Opcodes.DNEG));
+        }
+        return shape;
+    }
+
+    @Override
+    protected Expression[] getChildren() {
+        return new Expression[]{bitwiseNot};
+    }
+
+    @Override
+    public Expression[] getInputExpressions() {
+        return inputs;
+    }
+
+    @Override
+    public MatchResult match(FlowValue node, ExpressionContext ctx) {
         switch (operator) {
             case MINUS:
+                if (node.isComplex()) {
+                    return MatchResult.COMPLEX;
+                }
                 switch (node.getInsn().getOpcode()) {
                     case Opcodes.INEG:
                     case Opcodes.LNEG:
                     case Opcodes.FNEG:
                     case Opcodes.DNEG:
-                        return inputsMatch(node, ctx, expression);
+                        return matchInputs(node, ctx, inputs);
                 }
             case BITWISE_NOT:
-                return new BinaryExpression(
-                        null,
-                        expression,
-                        BinaryExpression.Operator.BITWISE_XOR,
-                        new IntLiteralExpression(null, -1)
-                ).matches(node, ctx);
+                return matchChild(bitwiseNot, node, ctx);
         }
-        return false;
+        return MatchResult.NO_MATCH;
     }
 
     public enum Operator {
@@ -0,0 +1,97 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how much work the analysis of a single method may do, so that pathological methods such as huge generated
+ * switches or data initializers fail quickly with a clear message rather than stalling class loading.
+ * Every limit is off (0) unless set. The wall-clock limit in particular depends on the machine and whatever else it is
+ * doing, so it should only be used to diagnose a stall, never relied on for normal loading.
+ */
+class AnalysisBudget {
+    private static final String MAX_INSTRUCTIONS_PROPERTY = "mixinextras.expressions.maxAnalysisInstructions";
+    private static final String MAX_FRAMES_PROPERTY = "mixinextras.expressions.maxAnalysisFrames";
+    private static final String MAX_MILLIS_PROPERTY = "mixinextras.expressions.maxAnalysisMillis";
+    private static final int MAX_INSTRUCTIONS = Integer.getInteger(MAX_INSTRUCTIONS_PROPERTY, 0);
+    private static final long MAX_FRAMES = Long.getLong(MAX_FRAMES_PROPERTY, 0);
+    private static final long MAX_MILLIS = Long.getLong(MAX_MILLIS_PROPERTY, 0);
+    // Reading the clock costs far more than the frames in between, so only do it every so often.
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final ClassNode classNode;
+    private final MethodNode methodNode;
+    private final long startTime = System.nanoTime();
+    private long frames;
+
+    private AnalysisBudget(ClassNode classNode, MethodNode methodNode) {
+        this.classNode = classNode;
+        this.methodNode = methodNode;
+    }
+
+    static AnalysisBudget start(ClassNode classNode, MethodNode methodNode) {
+        AnalysisBudget budget = new AnalysisBudget(classNode, methodNode);
+        int size = methodNode.instructions.size();
+        if (MAX_INSTRUCTIONS > 0 && size > MAX_INSTRUCTIONS) {
+            throw budget.exceeded(String.format("it has %s instructions", size), MAX_INSTRUCTIONS_PROPERTY);
+        }
+        return budget;
+    }
+
+    /**
+     * Records that the analysis has interpreted another frame.
+     */
+    void visitFrame() {
+        frames++;
+        if (MAX_FRAMES > 0 && frames > MAX_FRAMES) {
+            throw exceeded(String.format("it visited %s frames", MAX_FRAMES), MAX_FRAMES_PROPERTY);
+        }
+        if (MAX_MILLIS > 0 && frames % CLOCK_INTERVAL == 0) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            if (millis > MAX_MILLIS) {
+                throw exceeded(String.format("it took %s ms", millis), MAX_MILLIS_PROPERTY);
+            }
+        }
+    }
+
+    /**
+     * @return an {@link Analyzer} which counts each frame it visits against this budget
+     */
+    <V extends Value> Analyzer<V> newAnalyzer(Interpreter<V> interpreter) {
+        return new Analyzer<V>(interpreter) {
+            @Override
+            public Frame<V>[] analyze(String owner, MethodNode method) throws AnalyzerException {
+                try {
+                    return super.analyze(owner, method);
+                } catch (AnalyzerException e) {
+                    // The analyzer wraps anything thrown while it runs.
+                    if (e.getCause() instanceof AnalysisBudgetException) {
+                        throw (AnalysisBudgetException) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+
+            @Override
+            protected void newControlFlowEdge(int insnIndex, int successorIndex) {
+                visitFrame();
+            }
+        };
+    }
+
+    private AnalysisBudgetException exceeded(String reason, String property) {
+        return new AnalysisBudgetException(
+                String.format(
+                        "Gave up on the value flow of %s::%s%s because %s. The limit can be changed with -D%s.",
+                        classNode.name, methodNode.name, methodNode.desc, reason, property
+                )
+        );
+    }
+}
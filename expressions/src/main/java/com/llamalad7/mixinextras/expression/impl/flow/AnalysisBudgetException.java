@@ -0,0 +1,10 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+/**
+ * Thrown when analysing a method would take more work than {@link AnalysisBudget} allows.
+ */
+public class AnalysisBudgetException extends RuntimeException {
+    AnalysisBudgetException(String message) {
+        super(message);
+    }
+}
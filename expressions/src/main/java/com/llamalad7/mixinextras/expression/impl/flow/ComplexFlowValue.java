@@ -11,6 +11,8 @@ public class ComplexFlowValue extends FlowValue {
     private final int size;
     private final Set<FlowValue> sources;
     private final FlowContext context;
+    private Type type;
+    private int typeGeneration;
 
     public ComplexFlowValue(int size, Set<FlowValue> sources, FlowContext context) {
         super(null, null, (FlowValue[]) null);
@@ -67,6 +69,17 @@ public class ComplexFlowValue extends FlowValue {
 
     @Override
     public Type getType() {
-        return sources.stream().map(FlowValue::getType).reduce((type1, type2) -> ExpressionASMUtils.getCommonSupertype(context, type1, type2)).get();
+        // A single-pass analysis can still widen the types of our sources after we first work ours out.
+        int generation = FlowValue.getTypeGeneration();
+        if (type == null || typeGeneration != generation) {
+            Type result = null;
+            for (FlowValue source : sources) {
+                Type sourceType = source.getType();
+                result = result == null ? sourceType : ExpressionASMUtils.getCommonSupertype(context, result, sourceType);
+            }
+            type = result;
+            typeGeneration = generation;
+        }
+        return type;
     }
 }
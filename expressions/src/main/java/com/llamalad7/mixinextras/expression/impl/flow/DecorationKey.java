@@ -0,0 +1,57 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifies a kind of {@link FlowValue} decoration. Keys are interned, so there is exactly one per name, and each one
+ * owns a slot in the decorations of every node, which makes looking a decoration up a single array access.
+ */
+public final class DecorationKey<V> {
+    private static final Map<String, DecorationKey<?>> KEYS = new ConcurrentHashMap<>();
+    private static final List<DecorationKey<?>> BY_SLOT = new ArrayList<>();
+
+    public final String name;
+    final int slot;
+
+    private DecorationKey(String name, int slot) {
+        this.name = name;
+        this.slot = slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> DecorationKey<V> of(String name) {
+        DecorationKey<?> key = KEYS.get(name);
+        if (key == null) {
+            synchronized (BY_SLOT) {
+                key = KEYS.get(name);
+                if (key == null) {
+                    key = new DecorationKey<>(name, BY_SLOT.size());
+                    BY_SLOT.add(key);
+                    KEYS.put(name, key);
+                }
+            }
+        }
+        return (DecorationKey<V>) key;
+    }
+
+    /**
+     * @return the key with the given name, or {@code null} if nothing has used that name yet
+     */
+    static DecorationKey<?> find(String name) {
+        return KEYS.get(name);
+    }
+
+    static DecorationKey<?> bySlot(int slot) {
+        synchronized (BY_SLOT) {
+            return BY_SLOT.get(slot);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -5,11 +5,13 @@ import com.llamalad7.mixinextras.expression.impl.flow.expansion.StringConcatFact
 import com.llamalad7.mixinextras.expression.impl.flow.expansion.UnaryComparisonExpander;
 import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.*;
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionProfiler;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
-import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
 import org.objectweb.asm.tree.analysis.Interpreter;
+import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.asm.ASM;
 
 import java.util.*;
@@ -18,37 +20,192 @@ import java.util.function.Function;
 import static org.objectweb.asm.Opcodes.*;
 
 public class FlowInterpreter extends Interpreter<FlowValue> {
+    /**
+     * Selects how local types are calculated: {@code single-pass} (the default) works them out alongside the value
+     * flow, {@code two-pass} runs a separate analysis for them first, and {@code verify} does both and checks that the
+     * resulting flows are the same.
+     */
+    private static final String ANALYSIS_MODE = System.getProperty("mixinextras.expressions.flowAnalysis", "single-pass");
+
     private final FlowContext context;
     private final Map<AbstractInsnNode, FlowValue> cache = new IdentityHashMap<>();
-    private final Map<VarInsnNode, Type> localTypes;
-    private final List<FlowPostProcessor> postProcessors;
+    private final Function<VarInsnNode, Type> localTypes;
+    private final List<List<FlowPostProcessor>> postProcessorSweeps;
+    // Only kept by a single-pass analysis, so that a MethodFlows can later pick up where it left off.
+    private Frame<SinglePassInterpreter.TrackedValue>[] frames;
 
     protected FlowInterpreter(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
+        this(
+                classNode, methodNode, ctx,
+                LocalsCalculator.getLocalTypes(classNode, methodNode, ctx, AnalysisBudget.start(classNode, methodNode))::get
+        );
+    }
+
+    FlowInterpreter(ClassNode classNode, MethodNode methodNode, FlowContext ctx, Function<VarInsnNode, Type> localTypes) {
         super(ASM.API_VERSION);
         this.context = ctx;
-        this.localTypes = LocalsCalculator.getLocalTypes(classNode, methodNode, ctx);
-        this.postProcessors = Arrays.asList(
-                new NewArrayPostProcessor(methodNode), // Must go early because it is sensitive to BCI
-                new IincExpander(),
-                new UnaryComparisonExpander(),
-                new StringConcatFactoryExpander(),
-                new InstantiationPostProcessor(),
-                new StringConcatPostProcessor(),
-                new CallTaggingPostProcessor(classNode, methodNode),
-                new LMFPostProcessor(classNode),
-
-                new SplitNodeRemovalPostProcessor()
+        this.localTypes = localTypes;
+        // Each sweep runs its post-processors together on every flow before the graph is tidied up again. They can only
+        // share a sweep if none of them reads anything another changes: in particular, `setParents` clears the `next`
+        // of all the old parents until the sweep is over, so a post-processor that reads `next` can't share a sweep with
+        // one that might change the parents of its node's children.
+        this.postProcessorSweeps = Arrays.asList(
+                Arrays.asList(
+                        new NewArrayPostProcessor(methodNode), // Must go early because it is sensitive to BCI
+                        new IincExpander() // Only touches `iinc`s, which have no parents and are nobody's input
+                ),
+                Arrays.asList(
+                        // None of these read `next`, and they each rewrite different instructions.
+                        new UnaryComparisonExpander(),
+                        new StringConcatFactoryExpander(),
+                        // Only reads a call and its receiver's instruction, so is unaffected by the rest, and running
+                        // it before the instantiations are found leaves them the same.
+                        new CallTaggingPostProcessor(classNode, methodNode)
+                ),
+                Collections.singletonList(
+                        new InstantiationPostProcessor()
+                ),
+                Arrays.asList(
+                        // Both only decorate flows and mark others as synthetic.
+                        new StringConcatPostProcessor(),
+                        new LMFPostProcessor(classNode)
+                ),
+                Collections.singletonList(
+                        new SplitNodeRemovalPostProcessor()
+                )
         );
     }
 
     public static Collection<FlowValue> analyze(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
-        FlowInterpreter interpreter = new FlowInterpreter(classNode, methodNode, ctx);
+        return new ArrayList<>(interpret(classNode, methodNode, ctx).finish());
+    }
+
+    static FlowInterpreter interpret(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
+        AnalysisBudget budget = AnalysisBudget.start(classNode, methodNode);
+        FlowInterpreter interpreter;
+        switch (ANALYSIS_MODE) {
+            case "two-pass":
+                interpreter = analyzeTwoPass(classNode, methodNode, ctx, budget);
+                break;
+            case "verify":
+                interpreter = analyzeSinglePass(classNode, methodNode, ctx, budget);
+                checkSameFlows(
+                        analyzeTwoPass(classNode, methodNode, ctx, budget), interpreter,
+                        classNode, methodNode, methodNode.instructions, "Single-pass"
+                );
+                break;
+            default:
+                interpreter = analyzeSinglePass(classNode, methodNode, ctx, budget);
+        }
+        return interpreter;
+    }
+
+    /**
+     * Like {@link #analyze(ClassNode, MethodNode, FlowContext)}, but only works out the flows of the
+     * statements from {@code first} to {@code last}.
+     *
+     * @return the flows of the region, or {@code null} if they could differ from those of a full analysis (e.g. because
+     * a value comes into the region on the stack), in which case the caller should analyse the whole method instead
+     */
+    public static Collection<FlowValue> analyzeRegion(ClassNode classNode, MethodNode methodNode, FlowContext ctx,
+                                                      AbstractInsnNode first, AbstractInsnNode last) {
+        AnalysisBudget budget = AnalysisBudget.start(classNode, methodNode);
+        RegionAnalyzer region;
         try {
-            new Analyzer<>(interpreter).analyze(classNode.name, methodNode);
+            region = RegionAnalyzer.analyze(classNode, methodNode, ctx, first, last, budget);
         } catch (AnalyzerException e) {
             throw new RuntimeException("Failed to analyze value flow: ", e);
         }
-        return new ArrayList<>(interpreter.finish());
+        if (region == null || !region.isExact()) {
+            return null;
+        }
+        if (isVerifying()) {
+            checkSameFlows(
+                    analyzeTwoPass(classNode, methodNode, ctx, budget), region.getInterpreter(),
+                    classNode, methodNode, region.getRegion(), "Region"
+            );
+        }
+        return new ArrayList<>(region.getInterpreter().finish());
+    }
+
+    static boolean isVerifying() {
+        return ANALYSIS_MODE.equals("verify");
+    }
+
+    private static FlowInterpreter analyzeTwoPass(ClassNode classNode, MethodNode methodNode, FlowContext ctx,
+                                                  AnalysisBudget budget) {
+        FlowInterpreter interpreter = new FlowInterpreter(
+                classNode, methodNode, ctx,
+                LocalsCalculator.getLocalTypes(classNode, methodNode, ctx, budget)::get
+        );
+        try {
+            budget.newAnalyzer(interpreter).analyze(classNode.name, methodNode);
+        } catch (AnalyzerException e) {
+            throw new RuntimeException("Failed to analyze value flow: ", e);
+        }
+        return interpreter;
+    }
+
+    private static FlowInterpreter analyzeSinglePass(ClassNode classNode, MethodNode methodNode, FlowContext ctx,
+                                                     AnalysisBudget budget) {
+        LocalsCalculator locals = new LocalsCalculator(methodNode, ctx);
+        FlowInterpreter interpreter = new FlowInterpreter(classNode, methodNode, ctx, locals::getCurrentType);
+        try {
+            interpreter.frames = budget.newAnalyzer(new SinglePassInterpreter(interpreter, locals)).analyze(classNode.name, methodNode);
+        } catch (AnalyzerException e) {
+            throw new RuntimeException("Failed to analyze value flow: ", e);
+        }
+        return interpreter;
+    }
+
+    private static void checkSameFlows(FlowInterpreter expected, FlowInterpreter actual, ClassNode classNode,
+                                       MethodNode methodNode, Iterable<AbstractInsnNode> insns, String kind) {
+        for (AbstractInsnNode insn : insns) {
+            FlowValue expectedFlow = expected.cache.get(insn);
+            FlowValue actualFlow = actual.cache.get(insn);
+            if (!isSameFlow(expectedFlow, actualFlow)) {
+                throw new IllegalStateException(
+                        String.format(
+                                "%s flow analysis of %s::%s%s differs from two-pass analysis at %s",
+                                kind, classNode.name, methodNode.name, methodNode.desc, Bytecode.describeNode(insn)
+                        )
+                );
+            }
+        }
+    }
+
+    private static boolean isSameFlow(FlowValue expected, FlowValue actual) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        if (expected.getClass() != actual.getClass() || !Objects.equals(expected.getType(), actual.getType())) {
+            return false;
+        }
+        if (expected.inputCount() != actual.inputCount()) {
+            return false;
+        }
+        for (int i = 0; i < expected.inputCount(); i++) {
+            FlowValue expectedInput = expected.getInput(i);
+            FlowValue actualInput = actual.getInput(i);
+            if (expectedInput.isComplex() != actualInput.isComplex()) {
+                return false;
+            }
+            if (expectedInput.isComplex()) {
+                if (!Objects.equals(expectedInput.getType(), actualInput.getType())) {
+                    return false;
+                }
+            } else if (expectedInput.getInsn() != actualInput.getInsn()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the frames the analysis ended up with, or {@code null} if it didn't run in a single pass
+     */
+    Frame<SinglePassInterpreter.TrackedValue>[] getFrames() {
+        return frames;
     }
 
     public Collection<FlowValue> finish() {
@@ -60,7 +217,7 @@ public class FlowInterpreter extends Interpreter<FlowValue> {
         for (FlowValue value : flows) {
             value.onFinished();
         }
-        for (FlowPostProcessor postProcessor : postProcessors) {
+        for (List<FlowPostProcessor> postProcessors : postProcessorSweeps) {
             Set<FlowValue> synthetic = Collections.newSetFromMap(new IdentityHashMap<>());
             List<FlowValue> newFlows = new ArrayList<>();
             FlowPostProcessor.OutputSink sink = new FlowPostProcessor.OutputSink() {
@@ -80,8 +237,16 @@ public class FlowInterpreter extends Interpreter<FlowValue> {
                     }
                 }
             };
+            long[] nanos = new long[postProcessors.size()];
             for (FlowValue value : flows) {
-                postProcessor.process(value, sink);
+                for (int i = 0; i < nanos.length; i++) {
+                    long start = ExpressionProfiler.now();
+                    postProcessors.get(i).process(value, sink);
+                    nanos[i] += ExpressionProfiler.now() - start;
+                }
+            }
+            for (int i = 0; i < nanos.length; i++) {
+                ExpressionProfiler.recordPostProcessing(postProcessors.get(i), nanos[i]);
             }
             flows.removeAll(synthetic);
             for (FlowValue syntheticValue : synthetic) {
@@ -135,8 +300,11 @@ public class FlowInterpreter extends Interpreter<FlowValue> {
                 return new DummyFlowValue(value.getType());
         }
         VarInsnNode varNode = (VarInsnNode) insn;
-        Type type = localTypes.get(varNode);
-        return recordFlow(type, insn);
+        Type type = localTypes.apply(varNode);
+        FlowValue load = recordFlow(type, insn);
+        // In a single pass the local's type can still widen on later visits.
+        load.setType(type);
+        return load;
     }
 
     @Override
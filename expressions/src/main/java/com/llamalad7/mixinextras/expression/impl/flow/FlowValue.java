@@ -8,14 +8,33 @@ import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.analysis.Value;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FlowValue implements Value {
-    private final Type type;
+    private static final FlowValue[] NO_NEXT = new FlowValue[0];
+    private static final int[] NO_NEXT_INPUTS = new int[0];
+    private static final Object[] NO_DECORATIONS = new Object[0];
+    /**
+     * Children are checked for duplicates by scanning until there are this many of them, after which a set is kept.
+     */
+    private static final int MAX_SCANNED_NEXT = 16;
+    /**
+     * Bumped whenever a value's type changes after it was created, so types worked out from other values know when
+     * they might be out of date.
+     */
+    private static final AtomicInteger TYPE_GENERATION = new AtomicInteger();
+
+    private Type type;
     private AbstractInsnNode insn;
     protected FlowValue[] parents;
-    private final Set<Pair<FlowValue, Integer>> next = new HashSet<>(1);
+    // The children which use this value, and which of their inputs it is, kept side by side rather than as pairs.
+    private FlowValue[] nextNodes = NO_NEXT;
+    private int[] nextInputs = NO_NEXT_INPUTS;
+    private int nextCount;
+    private Set<Pair<FlowValue, Integer>> nextIndex;
     private boolean nextIsReady;
-    private Map<String, Object> decorations = null;
+    // Indexed by DecorationKey slot, and only as long as the highest slot in use.
+    private Object[] decorations = NO_DECORATIONS;
 
     public FlowValue(Type type, AbstractInsnNode insn, FlowValue... parents) {
         this.type = type;
@@ -24,10 +43,38 @@ public class FlowValue implements Value {
     }
 
     public void addChild(FlowValue value, int index) {
-        if (nextIsReady) {
+        if (nextIsReady || hasChild(value, index)) {
             return;
         }
-        next.add(Pair.of(value, index));
+        if (nextCount == nextNodes.length) {
+            int newLength = Math.max(2, nextCount * 2);
+            nextNodes = Arrays.copyOf(nextNodes, newLength);
+            nextInputs = Arrays.copyOf(nextInputs, newLength);
+        }
+        nextNodes[nextCount] = value;
+        nextInputs[nextCount] = index;
+        nextCount++;
+        if (nextIndex != null) {
+            nextIndex.add(Pair.of(value, index));
+        }
+    }
+
+    private boolean hasChild(FlowValue value, int index) {
+        if (nextIndex != null) {
+            return nextIndex.contains(Pair.of(value, index));
+        }
+        for (int i = 0; i < nextCount; i++) {
+            if (nextNodes[i] == value && nextInputs[i] == index) {
+                return true;
+            }
+        }
+        if (nextCount >= MAX_SCANNED_NEXT) {
+            nextIndex = new HashSet<>();
+            for (int i = 0; i < nextCount; i++) {
+                nextIndex.add(Pair.of(nextNodes[i], nextInputs[i]));
+            }
+        }
+        return false;
     }
 
     public void finish() {
@@ -42,7 +89,9 @@ public class FlowValue implements Value {
 
     private void markNextDirty() {
         nextIsReady = false;
-        next.clear();
+        Arrays.fill(nextNodes, 0, nextCount, null);
+        nextCount = 0;
+        nextIndex = null;
     }
 
     @Override
@@ -58,8 +107,55 @@ public class FlowValue implements Value {
         return insn;
     }
 
+    /**
+     * @return the children which use this value, paired with which of their inputs it is. Prefer
+     * {@link #getNextCount()}, {@link #getNextNode(int)} and {@link #getNextInput(int)} in hot code, since this creates
+     * the pairs as it is iterated.
+     */
     public Collection<Pair<FlowValue, Integer>> getNext() {
-        return next;
+        return new AbstractCollection<Pair<FlowValue, Integer>>() {
+            @Override
+            public Iterator<Pair<FlowValue, Integer>> iterator() {
+                return new Iterator<Pair<FlowValue, Integer>>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < nextCount;
+                    }
+
+                    @Override
+                    public Pair<FlowValue, Integer> next() {
+                        if (i >= nextCount) {
+                            throw new NoSuchElementException();
+                        }
+                        Pair<FlowValue, Integer> result = Pair.of(nextNodes[i], nextInputs[i]);
+                        i++;
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return nextCount;
+            }
+        };
+    }
+
+    public int getNextCount() {
+        return nextCount;
+    }
+
+    public FlowValue getNextNode(int i) {
+        return nextNodes[i];
+    }
+
+    /**
+     * @return which input of {@link #getNextNode(int) the i-th child} this value is
+     */
+    public int getNextInput(int i) {
+        return nextInputs[i];
     }
 
     public FlowValue getInput(int index) {
@@ -70,6 +166,17 @@ public class FlowValue implements Value {
         return parents.length;
     }
 
+    void setType(Type type) {
+        if (!type.equals(this.type)) {
+            this.type = type;
+            TYPE_GENERATION.incrementAndGet();
+        }
+    }
+
+    static int getTypeGeneration() {
+        return TYPE_GENERATION.get();
+    }
+
     public void setInsn(AbstractInsnNode insn) {
         this.insn = insn;
     }
@@ -117,24 +224,60 @@ public class FlowValue implements Value {
         return insn == null;
     }
 
-    public <V> void decorate(String key, V value) {
-        if (decorations == null) {
-            decorations = new HashMap<>();
+    public <V> void decorate(DecorationKey<V> key, V value) {
+        if (key.slot >= decorations.length) {
+            decorations = Arrays.copyOf(decorations, key.slot + 1);
         }
-        decorations.put(key, value);
+        decorations[key.slot] = value;
+    }
+
+    public <V> void decorate(String key, V value) {
+        decorate(DecorationKey.<V>of(key), value);
+    }
+
+    public boolean hasDecoration(DecorationKey<?> key) {
+        return getDecoration(key) != null;
     }
 
     public boolean hasDecoration(String key) {
-        return decorations != null && decorations.get(key) != null;
+        return getDecoration(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V getDecoration(DecorationKey<V> key) {
+        return key.slot < decorations.length ? (V) decorations[key.slot] : null;
     }
 
     @SuppressWarnings("unchecked")
     public <V> V getDecoration(String key) {
-        return (V) (decorations == null ? null : decorations.get(key));
+        DecorationKey<?> decorationKey = DecorationKey.find(key);
+        return decorationKey == null ? null : (V) getDecoration(decorationKey);
     }
 
+    public List<DecorationKey<?>> getDecorationKeys() {
+        List<DecorationKey<?>> keys = new ArrayList<>();
+        for (int i = 0; i < decorations.length; i++) {
+            if (decorations[i] != null) {
+                keys.add(DecorationKey.bySlot(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return a read-only view of this node's decorations, by name
+     */
     public Map<String, Object> getDecorations() {
-        return decorations == null ? Collections.emptyMap() : decorations;
+        if (decorations.length == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < decorations.length; i++) {
+            if (decorations[i] != null) {
+                result.put(DecorationKey.bySlot(i).name, decorations[i]);
+            }
+        }
+        return Collections.unmodifiableMap(result);
     }
 
     public boolean typeMatches(Type desiredType) {
@@ -1,9 +1,9 @@
 package com.llamalad7.mixinextras.expression.impl.flow;
 
 import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import com.llamalad7.mixinextras.expression.impl.utils.LocalVariableIndex;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
-import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
 import org.objectweb.asm.tree.analysis.BasicValue;
 import org.objectweb.asm.tree.analysis.Interpreter;
@@ -17,13 +17,14 @@ import static org.objectweb.asm.Opcodes.ILOAD;
 @SuppressWarnings("unchecked")
 class LocalsCalculator extends Interpreter<BasicValue> {
     private final Map<VarInsnNode, Object> results = new IdentityHashMap<>();
-    private final MethodNode methodNode;
+    private final LocalVariableIndex localVariables;
     private final FlowContext context;
 
-    public static Map<VarInsnNode, Type> getLocalTypes(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
+    static Map<VarInsnNode, Type> getLocalTypes(ClassNode classNode, MethodNode methodNode, FlowContext ctx,
+                                                AnalysisBudget budget) {
         LocalsCalculator calculator = new LocalsCalculator(methodNode, ctx);
         try {
-            new Analyzer<>(calculator).analyze(classNode.name, methodNode);
+            budget.newAnalyzer(calculator).analyze(classNode.name, methodNode);
         } catch (AnalyzerException e) {
             throw new RuntimeException(
                     String.format(
@@ -33,17 +34,12 @@ class LocalsCalculator extends Interpreter<BasicValue> {
                     e
             );
         }
-        for (Map.Entry<VarInsnNode, Object> entry : calculator.results.entrySet()) {
-            if (entry.getValue() instanceof Set) {
-                entry.setValue(((Set<Type>) entry.getValue()).stream().reduce((type1, type2) -> ExpressionASMUtils.getCommonSupertype(ctx, type1, type2)).get());
-            }
-        }
-        return (Map<VarInsnNode, Type>) (Object) calculator.results;
+        return calculator.getResults();
     }
 
-    private LocalsCalculator(MethodNode methodNode, FlowContext ctx) {
+    LocalsCalculator(MethodNode methodNode, FlowContext ctx) {
         super(ASM.API_VERSION);
-        this.methodNode = methodNode;
+        this.localVariables = new LocalVariableIndex(methodNode);
         this.context = ctx;
     }
 
@@ -112,6 +108,34 @@ class LocalsCalculator extends Interpreter<BasicValue> {
         return new BasicValue(ExpressionASMUtils.getCommonSupertype(context, value1.getType(), value2.getType()));
     }
 
+    /**
+     * @return the type of every load, once the analysis is done
+     */
+    Map<VarInsnNode, Type> getResults() {
+        for (Map.Entry<VarInsnNode, Object> entry : results.entrySet()) {
+            if (entry.getValue() instanceof Set) {
+                entry.setValue(reduce((Set<Type>) entry.getValue()));
+            }
+        }
+        return (Map<VarInsnNode, Type>) (Object) results;
+    }
+
+    /**
+     * Gets the type of the given load based on what the analysis has seen so far.
+     * Used when this calculator runs alongside a {@link FlowInterpreter} rather than before it.
+     */
+    Type getCurrentType(VarInsnNode insn) {
+        Object cached = results.get(insn);
+        if (cached instanceof Set) {
+            return reduce((Set<Type>) cached);
+        }
+        return (Type) cached;
+    }
+
+    private Type reduce(Set<Type> types) {
+        return types.stream().reduce((type1, type2) -> ExpressionASMUtils.getCommonSupertype(context, type1, type2)).get();
+    }
+
     private void recordType(VarInsnNode insn, Type type) {
         Object cached = results.get(insn);
         if (cached instanceof Type) {
@@ -120,32 +144,7 @@ class LocalsCalculator extends Interpreter<BasicValue> {
         if (cached instanceof Set) {
             ((Set<Type>) cached).add(type);
         }
-        LocalVariableNode local = getLocalVariableAt(insn);
+        LocalVariableNode local = localVariables.getLocalVariableAt(insn);
         results.put(insn, local != null ? Type.getType(local.desc) : new HashSet<>(Collections.singleton(type)));
     }
-
-    private LocalVariableNode getLocalVariableAt(VarInsnNode varInsn) {
-        int pos = methodNode.instructions.indexOf(varInsn);
-        int var = varInsn.var;
-
-        if (methodNode.localVariables == null || methodNode.localVariables.isEmpty()) {
-            return null;
-        }
-        LocalVariableNode localVariableNode = null;
-
-        for (LocalVariableNode local : methodNode.localVariables) {
-            if (local.index != var || local.desc == null) {
-                continue;
-            }
-            if (isOpcodeInRange(methodNode.instructions, local, pos)) {
-                localVariableNode = local;
-            }
-        }
-
-        return localVariableNode;
-    }
-
-    private boolean isOpcodeInRange(InsnList insns, LocalVariableNode local, int pos) {
-        return insns.indexOf(local.start) <= pos && insns.indexOf(local.end) > pos;
-    }
 }
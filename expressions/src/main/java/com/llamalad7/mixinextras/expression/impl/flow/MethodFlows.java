@@ -0,0 +1,512 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import com.llamalad7.mixinextras.expression.impl.flow.expansion.InsnExpander;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionProfiler;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.*;
+import org.spongepowered.asm.util.Bytecode;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * The value flow of a method, which can be brought up to date after other injectors have changed the method.
+ * <p>
+ * Nothing on the operand stack outlives the statement it belongs to, so the flows of a statement only depend on the
+ * local types it starts with. A single-pass analysis keeps those for every statement, which lets a statement that has
+ * since changed be interpreted again on its own, as long as it still hands the same local types to everything it can
+ * fall through, jump or throw to. Anything else, including changes to the exception handlers, means analysing the
+ * whole method again.
+ * <p>
+ * Until {@link #update()} is called, the flows stay those of the method as it was when it was analysed.
+ */
+public class MethodFlows {
+    private final ClassNode classNode;
+    private final MethodNode methodNode;
+    private final FlowContext context;
+
+    private Set<FlowValue> flows;
+    // The method's instructions and exception handlers as of the last update.
+    private AbstractInsnNode[] insns;
+    private List<TryCatchBlockNode> tryCatchBlocks;
+    // The local types before each instruction which starts a statement, and null for the rest. Null altogether if the
+    // analysis didn't provide them.
+    private Type[][] statementLocals;
+    // How many locals the statement types describe. Anything allocated later is only known within a single statement.
+    private int knownLocals;
+
+    private MethodFlows(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
+        this.classNode = classNode;
+        this.methodNode = methodNode;
+        this.context = ctx;
+    }
+
+    public static MethodFlows analyze(ClassNode classNode, MethodNode methodNode, FlowContext ctx) {
+        MethodFlows result = new MethodFlows(classNode, methodNode, ctx);
+        result.analyzeFully();
+        return result;
+    }
+
+    public Collection<FlowValue> getFlows() {
+        return Collections.unmodifiableSet(flows);
+    }
+
+    /**
+     * Brings the flows up to date with the method's current instructions.
+     *
+     * @return whether the method had changed, in which case anything derived from the old flows is stale
+     */
+    public boolean update() {
+        if (isUpToDate()) {
+            return false;
+        }
+        if (statementLocals != null && updateStatements()) {
+            ExpressionProfiler.count("incremental value flow updates");
+            if (FlowInterpreter.isVerifying()) {
+                checkSameFlows(FlowInterpreter.analyze(classNode, methodNode, context));
+            }
+        } else {
+            ExpressionProfiler.count("full value flow updates");
+            analyzeFully();
+        }
+        return true;
+    }
+
+    private void analyzeFully() {
+        FlowInterpreter interpreter = FlowInterpreter.interpret(classNode, methodNode, context);
+        flows = Collections.newSetFromMap(new IdentityHashMap<>());
+        flows.addAll(interpreter.finish());
+        insns = methodNode.instructions.toArray();
+        tryCatchBlocks = new ArrayList<>(methodNode.tryCatchBlocks);
+        Frame<SinglePassInterpreter.TrackedValue>[] frames = interpreter.getFrames();
+        if (frames == null || frames.length == 0) {
+            statementLocals = null;
+            return;
+        }
+        knownLocals = frames[0].getLocals();
+        statementLocals = new Type[frames.length][];
+        for (int i = 0; i < frames.length; i++) {
+            Frame<SinglePassInterpreter.TrackedValue> frame = frames[i];
+            if (frame != null && frame.getStackSize() == 0) {
+                recordStatement(statementLocals, i, getLocalTypes(frame, SinglePassInterpreter::getLocalType));
+            }
+        }
+    }
+
+    private boolean isUpToDate() {
+        if (methodNode.instructions.size() != insns.length || !tryCatchBlocks.equals(methodNode.tryCatchBlocks)) {
+            return false;
+        }
+        AbstractInsnNode insn = methodNode.instructions.getFirst();
+        for (AbstractInsnNode old : insns) {
+            if (insn != old) {
+                return false;
+            }
+            insn = insn.getNext();
+        }
+        return true;
+    }
+
+    private boolean updateStatements() {
+        if (!tryCatchBlocks.equals(methodNode.tryCatchBlocks)) {
+            return false;
+        }
+        AbstractInsnNode[] current = methodNode.instructions.toArray();
+        Map<AbstractInsnNode, Integer> oldPositions = new IdentityHashMap<>();
+        for (int i = 0; i < insns.length; i++) {
+            oldPositions.put(insns[i], i);
+        }
+        int[] oldIndices = matchInsns(current, oldPositions);
+        if (oldIndices == null) {
+            return false;
+        }
+        int[][] oldHandlerRanges = new int[tryCatchBlocks.size()][];
+        int[][] handlerRanges = new int[tryCatchBlocks.size()][];
+        for (int i = 0; i < tryCatchBlocks.size(); i++) {
+            TryCatchBlockNode tryCatchBlock = tryCatchBlocks.get(i);
+            oldHandlerRanges[i] = new int[]{oldPositions.get(tryCatchBlock.start), oldPositions.get(tryCatchBlock.end)};
+            handlerRanges[i] = new int[]{
+                    methodNode.instructions.indexOf(tryCatchBlock.start), methodNode.instructions.indexOf(tryCatchBlock.end)
+            };
+        }
+        Set<LabelNode> jumpTargets = null;
+        Type[][] newStatementLocals = new Type[current.length][];
+        boolean[] replaced = new boolean[insns.length];
+        List<FlowValue> added = new ArrayList<>();
+
+        int start = 0;
+        while (start < current.length) {
+            int end = start + 1;
+            while (end < current.length && (oldIndices[end] < 0 || statementLocals[oldIndices[end]] == null)) {
+                end++;
+            }
+            int oldStart = Math.max(oldIndices[start], 0);
+            int oldEnd = end == current.length ? insns.length : oldIndices[end];
+            boolean changed = end - start != oldEnd - oldStart;
+            for (int i = start; i < end && !changed; i++) {
+                changed = oldIndices[i] < 0;
+            }
+            if (!changed) {
+                for (int i = start; i < end; i++) {
+                    newStatementLocals[i] = statementLocals[oldIndices[i]];
+                }
+                start = end;
+                continue;
+            }
+            if (jumpTargets == null) {
+                jumpTargets = getJumpTargets();
+            }
+            for (int i = start + 1; i < end; i++) {
+                if (jumpTargets.contains(current[i])) {
+                    // Control flow joins in the middle of the statement, so it can't be interpreted on its own.
+                    return false;
+                }
+            }
+            Type[] entry = oldIndices[start] < 0 ? getInitialLocals() : statementLocals[oldIndices[start]];
+            StatementEffect before = execute(
+                    new LocalsCalculator(methodNode, context), BasicValue::getType,
+                    insns, oldStart, oldEnd, oldHandlerRanges, entry, null
+            );
+            LocalsCalculator locals = new LocalsCalculator(methodNode, context);
+            FlowInterpreter interpreter = new FlowInterpreter(classNode, methodNode, context, locals::getCurrentType);
+            StatementEffect after = execute(
+                    new SinglePassInterpreter(interpreter, locals), SinglePassInterpreter::getLocalType,
+                    current, start, end, handlerRanges, entry, newStatementLocals
+            );
+            if (before == null || after == null || !after.equals(before)) {
+                return false;
+            }
+            added.addAll(interpreter.finish());
+            Arrays.fill(replaced, oldStart, oldEnd, true);
+            start = end;
+        }
+
+        Set<FlowValue> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FlowValue flow : flows) {
+            Integer position = oldPositions.get(InsnExpander.getRepresentative(flow));
+            if (position == null) {
+                return false;
+            }
+            if (replaced[position]) {
+                removed.add(flow);
+            }
+        }
+        if (!isSelfContained(removed)) {
+            return false;
+        }
+        Set<FlowValue> newFlows = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FlowValue flow : flows) {
+            if (!removed.contains(flow)) {
+                newFlows.add(flow);
+            }
+        }
+        newFlows.addAll(added);
+        flows = newFlows;
+        insns = current;
+        statementLocals = newStatementLocals;
+        return true;
+    }
+
+    /**
+     * @return the old index of each current instruction, or -1 for new ones, or null if the changes can't be handled
+     * statement by statement
+     */
+    private int[] matchInsns(AbstractInsnNode[] current, Map<AbstractInsnNode, Integer> oldPositions) {
+        if (current.length == 0) {
+            return null;
+        }
+        int[] result = new int[current.length];
+        boolean[] kept = new boolean[insns.length];
+        int last = -1;
+        for (int i = 0; i < current.length; i++) {
+            Integer position = oldPositions.get(current[i]);
+            if (position == null) {
+                result[i] = -1;
+                continue;
+            }
+            if (position <= last) {
+                return null;
+            }
+            result[i] = last = position;
+            kept[position] = true;
+        }
+        if (result[0] > 0) {
+            // The old entry point has gone.
+            return null;
+        }
+        for (int i = 0; i < insns.length; i++) {
+            if (!kept[i] && !canRemove(insns[i])) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static boolean canRemove(AbstractInsnNode insn) {
+        return !(insn instanceof LabelNode || insn instanceof JumpInsnNode || insn instanceof TableSwitchInsnNode
+                || insn instanceof LookupSwitchInsnNode || insn.getOpcode() == RET);
+    }
+
+    private Set<LabelNode> getJumpTargets() {
+        Set<LabelNode> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AbstractInsnNode insn : methodNode.instructions) {
+            result.addAll(ExpressionASMUtils.getJumpTargets(insn));
+        }
+        for (TryCatchBlockNode tryCatchBlock : methodNode.tryCatchBlocks) {
+            result.add(tryCatchBlock.handler);
+        }
+        return result;
+    }
+
+    private Type[] getInitialLocals() {
+        Type[] result = new Type[knownLocals];
+        Arrays.fill(result, ExpressionASMUtils.BOTTOM_TYPE);
+        int local = 0;
+        if (!Bytecode.isStatic(methodNode)) {
+            result[local++] = Type.getObjectType(classNode.name);
+        }
+        for (Type argType : Type.getArgumentTypes(methodNode.desc)) {
+            result[local] = argType;
+            local += argType.getSize();
+        }
+        return result;
+    }
+
+    /**
+     * Interprets a statement from the given local types, noting every local state it passes on to the rest of the
+     * method.
+     *
+     * @return what the statement passes on, or null if it can't be interpreted on its own
+     */
+    private <V extends Value> StatementEffect execute(Interpreter<V> interpreter, Function<V, Type> localType,
+                                                      AbstractInsnNode[] code, int from, int to, int[][] handlerRanges,
+                                                      Type[] entry, Type[][] statementTypes) {
+        int maxLocals = Math.max(methodNode.maxLocals, entry.length);
+        for (int i = from; i < to; i++) {
+            if (code[i] instanceof VarInsnNode) {
+                maxLocals = Math.max(maxLocals, ((VarInsnNode) code[i]).var + 2);
+            } else if (code[i] instanceof IincInsnNode) {
+                maxLocals = Math.max(maxLocals, ((IincInsnNode) code[i]).var + 1);
+            }
+        }
+        Frame<V> frame = new Frame<>(maxLocals, methodNode.maxStack + 2 * (to - from));
+        frame.setReturn(interpreter.newReturnTypeValue(Type.getReturnType(methodNode.desc)));
+        for (int i = 0; i < maxLocals; i++) {
+            Type type = i < entry.length ? entry[i] : ExpressionASMUtils.BOTTOM_TYPE;
+            frame.setLocal(i, interpreter.newValue(type.equals(ExpressionASMUtils.BOTTOM_TYPE) ? null : type));
+        }
+
+        StatementEffect effect = new StatementEffect();
+        for (int i = from; i < to; i++) {
+            AbstractInsnNode insn = code[i];
+            Type[] state = null;
+            if (statementTypes != null && frame.getStackSize() == 0) {
+                state = getLocalTypes(frame, localType);
+                recordStatement(statementTypes, i, state);
+            }
+            for (int handler = 0; handler < handlerRanges.length; handler++) {
+                if (handlerRanges[handler][0] <= i && i < handlerRanges[handler][1]) {
+                    if (state == null) {
+                        state = getLocalTypes(frame, localType);
+                    }
+                    effect.handlers.merge(handler, state, this::merge);
+                }
+            }
+            int opcode = insn.getOpcode();
+            if (opcode < 0) {
+                continue;
+            }
+            if (opcode >= ILOAD && opcode <= ALOAD || opcode == RET) {
+                int var = ((VarInsnNode) insn).var;
+                if (localType.apply(frame.getLocal(var)).equals(ExpressionASMUtils.BOTTOM_TYPE)) {
+                    // We only know what's in this local if the statement put it there.
+                    return null;
+                }
+            }
+            try {
+                frame.execute(insn, interpreter);
+            } catch (AnalyzerException | IndexOutOfBoundsException e) {
+                return null;
+            }
+            if (opcode == JSR || opcode == RET) {
+                return null;
+            }
+            List<LabelNode> targets = ExpressionASMUtils.getJumpTargets(insn);
+            if (!targets.isEmpty()) {
+                if (frame.getStackSize() != 0) {
+                    return null;
+                }
+                Type[] jumpState = getLocalTypes(frame, localType);
+                for (LabelNode target : targets) {
+                    effect.jumps.merge(target, jumpState, this::merge);
+                }
+            }
+            if (opcode == GOTO || opcode == TABLESWITCH || opcode == LOOKUPSWITCH || opcode == ATHROW
+                    || opcode >= IRETURN && opcode <= RETURN) {
+                // Whatever is left of the statement can't be reached.
+                return effect;
+            }
+        }
+        if (to == code.length || frame.getStackSize() != 0) {
+            return null;
+        }
+        effect.exit = getLocalTypes(frame, localType);
+        return effect;
+    }
+
+    private <V extends Value> Type[] getLocalTypes(Frame<V> frame, Function<V, Type> localType) {
+        Type[] result = new Type[knownLocals];
+        for (int i = 0; i < knownLocals; i++) {
+            result[i] = localType.apply(frame.getLocal(i));
+        }
+        return result;
+    }
+
+    private static void recordStatement(Type[][] statementTypes, int index, Type[] types) {
+        // Most statements leave the local types alone, so share the array with the previous statement where possible.
+        for (int i = index - 1; i >= 0; i--) {
+            if (statementTypes[i] != null) {
+                if (Arrays.equals(statementTypes[i], types)) {
+                    types = statementTypes[i];
+                }
+                break;
+            }
+        }
+        statementTypes[index] = types;
+    }
+
+    private Type[] merge(Type[] types1, Type[] types2) {
+        Type[] result = types1.clone();
+        for (int i = 0; i < result.length; i++) {
+            if (!result[i].equals(types2[i])) {
+                result[i] = ExpressionASMUtils.getCommonSupertype(context, result[i], types2[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the given nodes are only connected to each other, so they can be replaced without touching
+     * the rest of the graph
+     */
+    private static boolean isSelfContained(Set<FlowValue> nodes) {
+        for (FlowValue node : nodes) {
+            for (int i = 0; i < node.inputCount(); i++) {
+                FlowValue input = node.getInput(i);
+                if (input instanceof DummyFlowValue) {
+                    continue;
+                }
+                if (input.isComplex() || !nodes.contains(input)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < node.getNextCount(); i++) {
+                if (!nodes.contains(node.getNextNode(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void checkSameFlows(Collection<FlowValue> expected) {
+        Map<AbstractInsnNode, FlowValue> expectedByInsn = getFlowsByInsn(expected);
+        Map<AbstractInsnNode, FlowValue> actualByInsn = getFlowsByInsn(flows);
+        for (AbstractInsnNode insn : methodNode.instructions) {
+            if (!isSameFlow(expectedByInsn.get(insn), actualByInsn.get(insn))) {
+                throw new IllegalStateException(
+                        String.format(
+                                "Incremental flow analysis of %s::%s%s differs from full analysis at %s",
+                                classNode.name, methodNode.name, methodNode.desc, Bytecode.describeNode(insn)
+                        )
+                );
+            }
+        }
+        if (expected.size() != flows.size()) {
+            throw new IllegalStateException(
+                    String.format(
+                            "Incremental flow analysis of %s::%s%s found %s flows rather than %s",
+                            classNode.name, methodNode.name, methodNode.desc, flows.size(), expected.size()
+                    )
+            );
+        }
+    }
+
+    private static Map<AbstractInsnNode, FlowValue> getFlowsByInsn(Collection<FlowValue> flows) {
+        Map<AbstractInsnNode, FlowValue> result = new IdentityHashMap<>();
+        for (FlowValue flow : flows) {
+            if (!InsnExpander.hasExpansion(flow)) {
+                result.put(flow.getInsn(), flow);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSameFlow(FlowValue expected, FlowValue actual) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        if (expected.getClass() != actual.getClass() || !Objects.equals(expected.getType(), actual.getType())) {
+            return false;
+        }
+        if (expected.inputCount() != actual.inputCount()
+                || !expected.getDecorationKeys().equals(actual.getDecorationKeys())) {
+            return false;
+        }
+        for (int i = 0; i < expected.inputCount(); i++) {
+            FlowValue expectedInput = expected.getInput(i);
+            FlowValue actualInput = actual.getInput(i);
+            if (expectedInput.isComplex() != actualInput.isComplex()) {
+                return false;
+            }
+            if (expectedInput.isComplex()) {
+                if (!Objects.equals(expectedInput.getType(), actualInput.getType())) {
+                    return false;
+                }
+            } else if (InsnExpander.getRepresentative(expectedInput) != InsnExpander.getRepresentative(actualInput)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The local types a statement passes on to the rest of the method.
+     */
+    private static class StatementEffect {
+        // What it falls through with, or null if it can't complete normally.
+        private Type[] exit;
+        private final Map<LabelNode, Type[]> jumps = new HashMap<>();
+        private final Map<Integer, Type[]> handlers = new HashMap<>();
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StatementEffect)) {
+                return false;
+            }
+            StatementEffect other = (StatementEffect) obj;
+            return Arrays.equals(exit, other.exit) && sameTypes(jumps, other.jumps) && sameTypes(handlers, other.handlers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(exit);
+        }
+
+        private static <K> boolean sameTypes(Map<K, Type[]> types1, Map<K, Type[]> types2) {
+            if (!types1.keySet().equals(types2.keySet())) {
+                return false;
+            }
+            for (Map.Entry<K, Type[]> entry : types1.entrySet()) {
+                if (!Arrays.equals(entry.getValue(), types2.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Works out the value flows of several methods at once. The analysis itself only reads the methods, but the
+ * {@link com.llamalad7.mixinextras.expression.impl.ExpressionService} isn't expected to be thread-safe and may need to
+ * look at classes the calling thread is in the middle of transforming. So while the analyses run, the calling thread
+ * stays around to answer every service call they make, rather than just waiting for them.
+ */
+public class ParallelFlowAnalysis {
+    /**
+     * Whether to analyse the other targets of an injector in the background as soon as it is first looked up.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("mixinextras.expressions.parallelAnalysis");
+
+    private static final ThreadLocal<BlockingQueue<Runnable>> OWNER = new ThreadLocal<>();
+
+    /**
+     * Runs all the given tasks, in parallel where possible, and returns once they are all done.
+     *
+     * @return for each task, either what it returned or the {@link Throwable} it threw
+     */
+    public static List<Object> run(List<? extends Callable<?>> tasks) {
+        List<Object> results = new ArrayList<>(tasks.size());
+        if (tasks.size() < 2 || Runtime.getRuntime().availableProcessors() < 2) {
+            for (Callable<?> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        BlockingQueue<Runnable> requests = new LinkedBlockingQueue<>();
+        List<Future<Object>> futures = new ArrayList<>(tasks.size());
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        for (Callable<?> task : tasks) {
+            futures.add(Pool.INSTANCE.submit(() -> {
+                OWNER.set(requests);
+                try {
+                    return call(task);
+                } finally {
+                    OWNER.remove();
+                    if (remaining.decrementAndGet() == 0) {
+                        requests.add(() -> {});
+                    }
+                }
+            }));
+        }
+        try {
+            while (remaining.get() > 0 || !requests.isEmpty()) {
+                requests.take().run();
+            }
+            for (Future<Object> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing value flows", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to analyse value flows", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Runs the given action on the thread which started the current analysis, or straight away if this isn't one of
+     * our worker threads.
+     */
+    public static <T> T onOwnerThread(Callable<T> action) {
+        BlockingQueue<Runnable> owner = OWNER.get();
+        if (owner == null) {
+            return unchecked(action);
+        }
+        FutureTask<T> task = new FutureTask<>(action);
+        owner.add(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the analysing thread", e);
+        } catch (ExecutionException e) {
+            throw sneakyThrow(e.getCause());
+        }
+    }
+
+    private static Object call(Callable<?> task) {
+        try {
+            return task.call();
+        } catch (Throwable e) {
+            return e;
+        }
+    }
+
+    private static <T> T unchecked(Callable<T> action) {
+        try {
+            return action.call();
+        } catch (Exception e) {
+            throw sneakyThrow(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> RuntimeException sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    private static class Pool {
+        private static final ExecutorService INSTANCE = new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors() - 1,
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("MixinExtras Flow Analysis #" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                null,
+                false
+        );
+    }
+}
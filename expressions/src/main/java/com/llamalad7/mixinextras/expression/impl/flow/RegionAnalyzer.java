@@ -0,0 +1,228 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Works out the value flow of only part of a method, for when nothing outside of it will be looked at.
+ * <p>
+ * The local types still need a pass over the whole method, but that is far cheaper than the value flow. The region is
+ * then widened to whole statements, so everything on the stack within it also comes from within it. Anything that
+ * still comes in from outside, e.g. through a jump into the middle of a statement, is left opaque.
+ */
+@SuppressWarnings("unchecked")
+class RegionAnalyzer {
+    private final MethodNode methodNode;
+    private final AbstractInsnNode[] insns;
+    private final FlowInterpreter interpreter;
+    private final AnalysisBudget budget;
+    private final Frame<BasicValue>[] localFrames;
+    private final int start;
+    private final int end;
+    private final Frame<FlowValue>[] frames;
+    private final List<TryCatchBlockNode>[] handlers;
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueSize;
+    private boolean exact = true;
+
+    private RegionAnalyzer(MethodNode methodNode, FlowInterpreter interpreter, AnalysisBudget budget,
+                           Frame<BasicValue>[] localFrames, int from, int to) {
+        this.methodNode = methodNode;
+        this.insns = methodNode.instructions.toArray();
+        this.interpreter = interpreter;
+        this.budget = budget;
+        this.localFrames = localFrames;
+        int start = from;
+        while (!isStatementStart(start)) {
+            start--;
+        }
+        int end = to + 1;
+        while (end < insns.length && !isStatementStart(end)) {
+            end++;
+        }
+        this.start = start;
+        this.end = end;
+        this.frames = new Frame[end - start];
+        this.handlers = new List[end - start];
+        this.queue = new int[end - start];
+        this.queued = new boolean[end - start];
+    }
+
+    /**
+     * @return the analysis of the statements from {@code first} to {@code last}, or {@code null} if the method uses
+     * subroutines
+     */
+    static RegionAnalyzer analyze(ClassNode classNode, MethodNode methodNode, FlowContext ctx,
+                                  AbstractInsnNode first, AbstractInsnNode last, AnalysisBudget budget)
+            throws AnalyzerException {
+        for (AbstractInsnNode insn : methodNode.instructions) {
+            if (insn.getOpcode() == JSR) {
+                return null;
+            }
+        }
+        LocalsCalculator locals = new LocalsCalculator(methodNode, ctx);
+        Frame<BasicValue>[] localFrames = budget.newAnalyzer(locals).analyze(classNode.name, methodNode);
+        FlowInterpreter interpreter = new FlowInterpreter(classNode, methodNode, ctx, locals.getResults()::get);
+        RegionAnalyzer analyzer = new RegionAnalyzer(
+                methodNode, interpreter, budget, localFrames,
+                methodNode.instructions.indexOf(first), methodNode.instructions.indexOf(last)
+        );
+        analyzer.run();
+        return analyzer;
+    }
+
+    FlowInterpreter getInterpreter() {
+        return interpreter;
+    }
+
+    /**
+     * @return the instructions whose flows were worked out
+     */
+    List<AbstractInsnNode> getRegion() {
+        return Arrays.asList(insns).subList(start, end);
+    }
+
+    /**
+     * @return whether the flows are the same as those of a full analysis, i.e. no stack values were left opaque
+     */
+    boolean isExact() {
+        return exact;
+    }
+
+    private boolean isStatementStart(int index) {
+        return index == 0 || localFrames[index] != null && localFrames[index].getStackSize() == 0;
+    }
+
+    private void run() throws AnalyzerException {
+        for (TryCatchBlockNode tryCatchBlock : methodNode.tryCatchBlocks) {
+            int handler = indexOf(tryCatchBlock.handler);
+            if (!isInRegion(handler)) {
+                continue;
+            }
+            int tryStart = indexOf(tryCatchBlock.start);
+            int tryEnd = indexOf(tryCatchBlock.end);
+            for (int i = Math.max(tryStart, start); i < Math.min(tryEnd, end); i++) {
+                if (handlers[i - start] == null) {
+                    handlers[i - start] = new ArrayList<>();
+                }
+                handlers[i - start].add(tryCatchBlock);
+            }
+            if (tryStart < start || tryEnd > end) {
+                enterFromOutside(handler);
+            }
+        }
+        enterFromOutside(start);
+        enterTargetsFromOutside(0, start);
+        enterTargetsFromOutside(end, insns.length);
+        while (queueSize > 0) {
+            int index = queue[--queueSize];
+            queued[index - start] = false;
+            execute(index);
+        }
+    }
+
+    private void execute(int index) throws AnalyzerException {
+        budget.visitFrame();
+        Frame<FlowValue> before = frames[index - start];
+        AbstractInsnNode insn = insns[index];
+        int opcode = insn.getOpcode();
+        if (opcode < 0) {
+            merge(index + 1, before);
+        } else {
+            if (opcode == RET) {
+                throw new AnalyzerException(insn, "Subroutines are not supported");
+            }
+            Frame<FlowValue> after = new Frame<>(before);
+            after.execute(insn, interpreter);
+            // Same order as the Analyzer, since merges can depend on which value came first.
+            if (opcode != GOTO && !(insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode)
+                    && opcode != ATHROW && (opcode < IRETURN || opcode > RETURN)) {
+                merge(index + 1, after);
+            }
+            for (LabelNode target : ExpressionASMUtils.getJumpTargets(insn)) {
+                merge(indexOf(target), after);
+            }
+        }
+        List<TryCatchBlockNode> insnHandlers = handlers[index - start];
+        if (insnHandlers == null) {
+            return;
+        }
+        for (TryCatchBlockNode tryCatchBlock : insnHandlers) {
+            Type catchType = Type.getObjectType(tryCatchBlock.type == null ? "java/lang/Throwable" : tryCatchBlock.type);
+            Frame<FlowValue> handler = new Frame<>(before);
+            handler.clearStack();
+            handler.push(interpreter.newExceptionValue(tryCatchBlock, handler, catchType));
+            merge(indexOf(tryCatchBlock.handler), handler);
+        }
+    }
+
+    /**
+     * Starts the analysis at the given instruction from what the local types say comes in from outside the region.
+     */
+    private void enterFromOutside(int index) throws AnalyzerException {
+        Frame<BasicValue> source = localFrames[index];
+        if (!isInRegion(index) || source == null) {
+            return;
+        }
+        Frame<FlowValue> frame = new Frame<>(source.getLocals(), source.getMaxStackSize());
+        frame.setReturn(interpreter.newReturnTypeValue(Type.getReturnType(methodNode.desc)));
+        for (int i = 0; i < source.getLocals(); i++) {
+            frame.setLocal(i, getOpaqueValue(source.getLocal(i)));
+        }
+        for (int i = 0; i < source.getStackSize(); i++) {
+            frame.push(getOpaqueValue(source.getStack(i)));
+            exact = false;
+        }
+        merge(index, frame);
+    }
+
+    private void enterTargetsFromOutside(int from, int to) throws AnalyzerException {
+        for (int i = from; i < to; i++) {
+            for (LabelNode target : ExpressionASMUtils.getJumpTargets(insns[i])) {
+                enterFromOutside(indexOf(target));
+            }
+        }
+    }
+
+    private FlowValue getOpaqueValue(BasicValue value) {
+        if (value == null || value.getType().equals(ExpressionASMUtils.BOTTOM_TYPE)) {
+            return interpreter.newValue(null);
+        }
+        return interpreter.newValue(value.getType());
+    }
+
+    private void merge(int index, Frame<FlowValue> frame) throws AnalyzerException {
+        if (!isInRegion(index)) {
+            return;
+        }
+        Frame<FlowValue> old = frames[index - start];
+        boolean changed;
+        if (old == null) {
+            frames[index - start] = new Frame<>(frame);
+            changed = true;
+        } else {
+            changed = old.merge(frame, interpreter);
+        }
+        if (changed && !queued[index - start]) {
+            queued[index - start] = true;
+            queue[queueSize++] = index;
+        }
+    }
+
+    private boolean isInRegion(int index) {
+        return index >= start && index < end;
+    }
+
+    private int indexOf(AbstractInsnNode insn) {
+        return methodNode.instructions.indexOf(insn);
+    }
+}
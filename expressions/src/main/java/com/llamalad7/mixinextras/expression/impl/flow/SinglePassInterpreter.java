@@ -0,0 +1,140 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionASMUtils;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+import org.spongepowered.asm.util.asm.ASM;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Drives a {@link LocalsCalculator} and a {@link FlowInterpreter} in lockstep, so that local types and value flow are
+ * worked out by the same fixed-point iteration rather than by two separate passes over the method.
+ * The locals calculator always sees each instruction first, so loads can use the local types known so far.
+ */
+class SinglePassInterpreter extends Interpreter<SinglePassInterpreter.TrackedValue> {
+    private final FlowInterpreter flows;
+    private final LocalsCalculator locals;
+
+    SinglePassInterpreter(FlowInterpreter flows, LocalsCalculator locals) {
+        super(ASM.API_VERSION);
+        this.flows = flows;
+        this.locals = locals;
+    }
+
+    @Override
+    public TrackedValue newValue(Type type) {
+        return TrackedValue.of(flows.newValue(type), locals.newValue(type));
+    }
+
+    @Override
+    public TrackedValue newOperation(AbstractInsnNode insn) {
+        BasicValue local = locals.newOperation(insn);
+        return TrackedValue.of(flows.newOperation(insn), local);
+    }
+
+    @Override
+    public TrackedValue copyOperation(AbstractInsnNode insn, TrackedValue value) {
+        BasicValue local = locals.copyOperation(insn, value.local);
+        return TrackedValue.of(flows.copyOperation(insn, value.flow), local);
+    }
+
+    @Override
+    public TrackedValue unaryOperation(AbstractInsnNode insn, TrackedValue value) {
+        BasicValue local = locals.unaryOperation(insn, value.local);
+        return TrackedValue.of(flows.unaryOperation(insn, value.flow), local);
+    }
+
+    @Override
+    public TrackedValue binaryOperation(AbstractInsnNode insn, TrackedValue value1, TrackedValue value2) {
+        BasicValue local = locals.binaryOperation(insn, value1.local, value2.local);
+        return TrackedValue.of(flows.binaryOperation(insn, value1.flow, value2.flow), local);
+    }
+
+    @Override
+    public TrackedValue ternaryOperation(AbstractInsnNode insn, TrackedValue value1, TrackedValue value2, TrackedValue value3) {
+        BasicValue local = locals.ternaryOperation(insn, value1.local, value2.local, value3.local);
+        return TrackedValue.of(flows.ternaryOperation(insn, value1.flow, value2.flow, value3.flow), local);
+    }
+
+    @Override
+    public TrackedValue naryOperation(AbstractInsnNode insn, List<? extends TrackedValue> values) {
+        List<BasicValue> localValues = new ArrayList<>(values.size());
+        List<FlowValue> flowValues = new ArrayList<>(values.size());
+        for (TrackedValue value : values) {
+            localValues.add(value.local);
+            flowValues.add(value.flow);
+        }
+        BasicValue local = locals.naryOperation(insn, localValues);
+        return TrackedValue.of(flows.naryOperation(insn, flowValues), local);
+    }
+
+    @Override
+    public void returnOperation(AbstractInsnNode insn, TrackedValue value, TrackedValue expected) {
+        locals.returnOperation(insn, value.local, expected.local);
+        flows.returnOperation(insn, value.flow, expected.flow);
+    }
+
+    @Override
+    public TrackedValue merge(TrackedValue value1, TrackedValue value2) {
+        FlowValue flow = flows.merge(value1.flow, value2.flow);
+        BasicValue local = locals.merge(value1.local, value2.local);
+        if (flow == value1.flow && local == value1.local) {
+            return value1;
+        }
+        return new TrackedValue(flow, local);
+    }
+
+    /**
+     * @return the type the locals calculator has for the given local, where {@link ExpressionASMUtils#BOTTOM_TYPE}
+     * means it isn't initialized
+     */
+    static Type getLocalType(TrackedValue value) {
+        return value == null || value.local == null ? ExpressionASMUtils.BOTTOM_TYPE : value.local.getType();
+    }
+
+    static class TrackedValue implements Value {
+        final FlowValue flow;
+        final BasicValue local;
+
+        private TrackedValue(FlowValue flow, BasicValue local) {
+            this.flow = flow;
+            this.local = local;
+        }
+
+        private static TrackedValue of(FlowValue flow, BasicValue local) {
+            if (flow == null && local == null) {
+                return null;
+            }
+            return new TrackedValue(flow, local);
+        }
+
+        @Override
+        public int getSize() {
+            // The frames must be laid out exactly as the flow analysis alone would lay them out.
+            return flow.getSize();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TrackedValue)) {
+                return false;
+            }
+            TrackedValue other = (TrackedValue) obj;
+            return Objects.equals(flow, other.flow) && Objects.equals(local, other.local);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(flow, local);
+        }
+    }
+}
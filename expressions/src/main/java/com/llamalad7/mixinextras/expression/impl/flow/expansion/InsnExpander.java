@@ -55,8 +55,12 @@ public abstract class InsnExpander implements FlowPostProcessor {
         Expansion expansion = node.getDecoration(EXPANSION);
         AbstractInsnNode compoundInsn = expansion.compound;
         InjectionNode compoundNode = target.addInjectionNode(compoundInsn);
-        if (!compoundNode.hasDecoration(ExpressionDecorations.EXPANSION_INFO)) {
+        Expansion existing = compoundNode.getDecoration(ExpressionDecorations.EXPANSION_INFO);
+        if (existing == null) {
             compoundNode.decorate(ExpressionDecorations.EXPANSION_INFO, expansion);
+        } else {
+            // The method may have been analysed again since, which describes the same expansion with a new object.
+            expansion = existing;
         }
         expansion.registerInterest(info, node.getDecoration(INSN_COMPONENT));
         return expansion;
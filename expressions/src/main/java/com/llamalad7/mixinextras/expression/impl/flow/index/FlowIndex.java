@@ -0,0 +1,190 @@
+package com.llamalad7.mixinextras.expression.impl.flow.index;
+
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.Expression;
+import com.llamalad7.mixinextras.expression.impl.flow.DecorationKey;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
+import com.llamalad7.mixinextras.expression.impl.pool.IdentifierPool;
+import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
+import org.apache.commons.lang3.ArrayUtils;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.util.*;
+
+/**
+ * Buckets the flows of a method by opcode, decoration and member name so that an expression only needs to be tried
+ * against the flows which fit its {@link FlowShape}, or against the flows which lead to its most selective part.
+ */
+public class FlowIndex {
+    private final Collection<FlowValue> flows;
+    private final Map<Integer, List<FlowValue>> byOpcode = new HashMap<>();
+    private final Map<DecorationKey<?>, List<FlowValue>> byDecoration = new HashMap<>();
+    private final Map<String, List<FlowValue>> byMemberName = new HashMap<>();
+
+    public FlowIndex(Collection<FlowValue> flows) {
+        this.flows = flows;
+        for (FlowValue flow : flows) {
+            byOpcode.computeIfAbsent(flow.getInsn().getOpcode(), k -> new ArrayList<>()).add(flow);
+            for (DecorationKey<?> decoration : flow.getDecorationKeys()) {
+                byDecoration.computeIfAbsent(decoration, k -> new ArrayList<>()).add(flow);
+            }
+            String name = getMemberName(flow);
+            if (name != null) {
+                byMemberName.computeIfAbsent(name, k -> new ArrayList<>()).add(flow);
+            }
+        }
+    }
+
+    public Collection<FlowValue> getFlows() {
+        return flows;
+    }
+
+    /**
+     * Finds the nodes the given expression could match at its root. Usually these are simply the nodes which fit its
+     * root shape, but if one of its sub-expressions is much more selective (e.g. a call to one specific method) then
+     * the roots are instead found by walking up from that sub-expression's candidates.
+     */
+    public Collection<FlowValue> getCandidates(Expression expr, IdentifierPool pool) {
+        FlowShape rootShape = expr.getRootShape();
+        Anchor anchor = new Anchor(expr, ArrayUtils.EMPTY_INT_ARRAY, estimateCandidates(rootShape, pool));
+        anchor = findAnchor(expr, ArrayUtils.EMPTY_INT_ARRAY, anchor, pool);
+        if (anchor.expr == expr) {
+            return getCandidates(rootShape, pool);
+        }
+        Collection<FlowValue> current = getCandidates(anchor.expr.getRootShape(), pool);
+        for (int i = anchor.path.length - 1; i >= 0; i--) {
+            int inputIndex = anchor.path[i];
+            Set<FlowValue> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<FlowValue> parents = new ArrayList<>();
+            for (FlowValue node : current) {
+                for (int j = 0; j < node.getNextCount(); j++) {
+                    FlowValue parent = node.getNextNode(j);
+                    if (node.getNextInput(j) == inputIndex && seen.add(parent)) {
+                        parents.add(parent);
+                    }
+                }
+            }
+            current = parents;
+        }
+        List<FlowValue> result = new ArrayList<>();
+        for (FlowValue node : current) {
+            if (rootShape.accepts(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param path the input indices leading from the root expression to {@code expr}
+     * @return the most selective of {@code best} and the sub-expressions of {@code expr}
+     */
+    private Anchor findAnchor(Expression expr, int[] path, Anchor best, IdentifierPool pool) {
+        Expression[] inputs = expr.getInputExpressions();
+        if (inputs == null) {
+            return best;
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            Expression input = inputs[i];
+            int[] inputPath = ArrayUtils.add(path, i);
+            FlowShape shape = input.getRootShape();
+            if (!shape.isAny()) {
+                int estimate = estimateCandidates(shape, pool);
+                if (estimate < best.estimate) {
+                    best = new Anchor(input, inputPath, estimate);
+                }
+            }
+            best = findAnchor(input, inputPath, best, pool);
+        }
+        return best;
+    }
+
+    /**
+     * @return an upper bound on the number of candidates for the given shape, without collecting them
+     */
+    private int estimateCandidates(FlowShape shape, IdentifierPool pool) {
+        if (shape.isAny()) {
+            return flows.size();
+        }
+        Set<String> names = shape.getMemberId() == null ? null : pool.getMemberNames(shape.getMemberId());
+        int result = 0;
+        if (names != null) {
+            for (String name : names) {
+                result += byMemberName.getOrDefault(name, Collections.emptyList()).size();
+            }
+            return result;
+        }
+        BitSet opcodes = shape.getOpcodes();
+        for (int opcode = opcodes.nextSetBit(0); opcode >= 0; opcode = opcodes.nextSetBit(opcode + 1)) {
+            result += byOpcode.getOrDefault(opcode, Collections.emptyList()).size();
+        }
+        for (DecorationKey<?> decoration : shape.getDecorations()) {
+            result += byDecoration.getOrDefault(decoration, Collections.emptyList()).size();
+        }
+        return result;
+    }
+
+    public Collection<FlowValue> getCandidates(FlowShape shape, IdentifierPool pool) {
+        if (shape.isAny()) {
+            return flows;
+        }
+        Set<String> names = shape.getMemberId() == null ? null : pool.getMemberNames(shape.getMemberId());
+        if (names != null) {
+            List<FlowValue> result = new ArrayList<>();
+            for (String name : names) {
+                for (FlowValue flow : byMemberName.getOrDefault(name, Collections.emptyList())) {
+                    if (shape.accepts(flow)) {
+                        result.add(flow);
+                    }
+                }
+            }
+            return result;
+        }
+        List<FlowValue> result = new ArrayList<>();
+        BitSet opcodes = shape.getOpcodes();
+        for (int opcode = opcodes.nextSetBit(0); opcode >= 0; opcode = opcodes.nextSetBit(opcode + 1)) {
+            result.addAll(byOpcode.getOrDefault(opcode, Collections.emptyList()));
+        }
+        if (shape.getDecorations().isEmpty()) {
+            return result;
+        }
+        Set<FlowValue> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DecorationKey<?> decoration : shape.getDecorations()) {
+            for (FlowValue flow : byDecoration.getOrDefault(decoration, Collections.emptyList())) {
+                if (!opcodes.get(flow.getInsn().getOpcode()) && seen.add(flow)) {
+                    result.add(flow);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class Anchor {
+        final Expression expr;
+        final int[] path;
+        final int estimate;
+
+        Anchor(Expression expr, int[] path, int estimate) {
+            this.expr = expr;
+            this.path = path;
+            this.estimate = estimate;
+        }
+    }
+
+    public static String getMemberName(FlowValue flow) {
+        LMFInfo lmfInfo = flow.getDecoration(FlowDecorations.LMF_INFO);
+        if (lmfInfo != null) {
+            return lmfInfo.impl.getName();
+        }
+        AbstractInsnNode insn = flow.getInsn();
+        if (insn instanceof MethodInsnNode) {
+            return ((MethodInsnNode) insn).name;
+        }
+        if (insn instanceof FieldInsnNode) {
+            return ((FieldInsnNode) insn).name;
+        }
+        return null;
+    }
+}
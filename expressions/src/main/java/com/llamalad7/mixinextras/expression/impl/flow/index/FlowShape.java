@@ -0,0 +1,112 @@
+package com.llamalad7.mixinextras.expression.impl.flow.index;
+
+import com.llamalad7.mixinextras.expression.impl.ast.identifiers.DefinedMemberIdentifier;
+import com.llamalad7.mixinextras.expression.impl.ast.identifiers.MemberIdentifier;
+import com.llamalad7.mixinextras.expression.impl.flow.DecorationKey;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+
+import java.util.*;
+
+/**
+ * Describes which flow nodes an expression could possibly match at its root, so that nodes which certainly won't match
+ * can be skipped without running the full match.
+ */
+public class FlowShape {
+    public static final FlowShape ANY = new FlowShape(null, Collections.emptySet(), null);
+
+    private final BitSet opcodes;
+    private final Set<DecorationKey<?>> decorations;
+    private final String memberId;
+
+    private FlowShape(BitSet opcodes, Set<DecorationKey<?>> decorations, String memberId) {
+        this.opcodes = opcodes;
+        this.decorations = decorations;
+        this.memberId = memberId;
+    }
+
+    public static FlowShape opcodes(int... opcodes) {
+        BitSet set = new BitSet();
+        for (int opcode : opcodes) {
+            set.set(opcode);
+        }
+        return new FlowShape(set, Collections.emptySet(), null);
+    }
+
+    /**
+     * @param from the first opcode to include
+     * @param to the last opcode to include
+     */
+    public static FlowShape opcodeRange(int from, int to) {
+        BitSet set = new BitSet();
+        set.set(from, to + 1);
+        return new FlowShape(set, Collections.emptySet(), null);
+    }
+
+    public static FlowShape decoration(DecorationKey<?> key) {
+        return new FlowShape(new BitSet(), Collections.singleton(key), null);
+    }
+
+    /**
+     * Additionally requires the node to refer to a member which could be matched by the given identifier.
+     */
+    public FlowShape withMember(MemberIdentifier identifier) {
+        if (identifier instanceof DefinedMemberIdentifier) {
+            return withMember(((DefinedMemberIdentifier) identifier).name);
+        }
+        return this;
+    }
+
+    public FlowShape withMember(String id) {
+        if (isAny()) {
+            return this;
+        }
+        return new FlowShape(opcodes, decorations, id);
+    }
+
+    public FlowShape or(FlowShape other) {
+        if (isAny() || other.isAny()) {
+            return ANY;
+        }
+        BitSet newOpcodes = (BitSet) opcodes.clone();
+        newOpcodes.or(other.opcodes);
+        Set<DecorationKey<?>> newDecorations = new HashSet<>(decorations);
+        newDecorations.addAll(other.decorations);
+        String newMemberId = Objects.equals(memberId, other.memberId) ? memberId : null;
+        return new FlowShape(newOpcodes, newDecorations, newMemberId);
+    }
+
+    public boolean isAny() {
+        return opcodes == null;
+    }
+
+    public boolean accepts(FlowValue node) {
+        if (isAny() || node.isComplex()) {
+            // Complex values have no single instruction, so leave it to the full match to decide.
+            return true;
+        }
+        if (opcodes.get(node.getInsn().getOpcode())) {
+            return true;
+        }
+        for (DecorationKey<?> decoration : decorations) {
+            if (node.hasDecoration(decoration)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    BitSet getOpcodes() {
+        return opcodes;
+    }
+
+    Set<DecorationKey<?>> getDecorations() {
+        return decorations;
+    }
+
+    /**
+     * @return the id of the defined member every matching node must refer to, or {@code null} if there isn't one
+     */
+    public String getMemberId() {
+        return memberId;
+    }
+}
@@ -16,8 +16,17 @@ public class ExpressionContext {
     public final Type type;
     public final boolean isStatic;
     public final boolean allowIncompleteListInputs;
+    public final MatchMemo memo;
 
     public ExpressionContext(IdentifierPool pool, Expression.OutputSink sink, ClassNode classNode, MethodNode method, Type type, boolean allowIncompleteListInputs) {
+        this(pool, sink, classNode, method, type, allowIncompleteListInputs, null);
+    }
+
+    /**
+     * @param memo where to remember the results of sub-expressions for this matching session, or {@code null} to always
+     *             match them afresh
+     */
+    public ExpressionContext(IdentifierPool pool, Expression.OutputSink sink, ClassNode classNode, MethodNode method, Type type, boolean allowIncompleteListInputs, MatchMemo memo) {
         this.pool = pool;
         this.sink = sink;
         this.classNode = classNode;
@@ -25,6 +34,7 @@ public class ExpressionContext {
         this.type = type;
         this.isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
         this.allowIncompleteListInputs = allowIncompleteListInputs;
+        this.memo = memo;
     }
 
     public void capture(FlowValue node, Expression expression) {
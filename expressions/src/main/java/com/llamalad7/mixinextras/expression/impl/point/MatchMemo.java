@@ -0,0 +1,27 @@
+package com.llamalad7.mixinextras.expression.impl.point;
+
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.Expression;
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.MatchResult;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers whether sub-expressions matched each node during one matching session, i.e. while the same
+ * {@link ExpressionContext} is in use. Only sub-expressions which can't capture anything are remembered, since their
+ * answer for a node can't change and trying them again has no effect other than the time it takes.
+ */
+public class MatchMemo {
+    private final Map<Expression, Map<FlowValue, MatchResult>> results = new IdentityHashMap<>();
+
+    public MatchResult match(Expression expr, FlowValue node, ExpressionContext ctx) {
+        Map<FlowValue, MatchResult> known = results.computeIfAbsent(expr, k -> new IdentityHashMap<>());
+        MatchResult result = known.get(node);
+        if (result == null) {
+            result = expr.match(node, ctx);
+            known.put(node, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package com.llamalad7.mixinextras.expression.impl.point;
+
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.Expression;
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.MatchResult;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowIndex;
+import com.llamalad7.mixinextras.expression.impl.pool.IdentifierPool;
+import com.llamalad7.mixinextras.expression.impl.pool.SharedMemberLookups;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionProfiler;
+
+import java.util.*;
+
+/**
+ * Matches expressions against the flows of one target method. A single instance is shared by every injection point
+ * which targets the method, so work which doesn't depend on the injector, like checking which nodes a definition refers
+ * to, is only done once however many injectors use it.
+ */
+public class TargetMatcher {
+    private final FlowIndex index;
+    private final SharedMemberLookups lookups = new SharedMemberLookups();
+
+    public TargetMatcher(FlowIndex index) {
+        this.index = index;
+    }
+
+    public FlowIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return a view of the given pool which shares its member lookups with every other pool used on this target
+     */
+    public IdentifierPool share(IdentifierPool pool) {
+        return pool.withSharedLookups(lookups);
+    }
+
+    /**
+     * Tries a batch of expressions in one traversal of the flows. The candidates of every expression are gathered
+     * first, and then each candidate is visited once and tried against all the expressions which could match it.
+     */
+    public void matchAll(List<Expression> expressions, ExpressionContext ctx, AttemptListener listener) {
+        Map<FlowValue, List<Expression>> attempts = new IdentityHashMap<>();
+        List<FlowValue> order = new ArrayList<>();
+        for (Expression expr : expressions) {
+            for (FlowValue flow : index.getCandidates(expr, ctx.pool)) {
+                List<Expression> forFlow = attempts.get(flow);
+                if (forFlow == null) {
+                    attempts.put(flow, forFlow = new ArrayList<>(1));
+                    order.add(flow);
+                }
+                forFlow.add(expr);
+            }
+        }
+        for (FlowValue flow : order) {
+            for (Expression expr : attempts.get(flow)) {
+                MatchResult result = expr.match(flow, ctx);
+                ExpressionProfiler.recordAttempt(result);
+                // Running into complex data means the expression doesn't match.
+                listener.onAttempt(result == MatchResult.MATCH);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface AttemptListener {
+        /**
+         * Called after each expression has been tried against a node, whether or not it matched.
+         */
+        void onAttempt(boolean matched);
+    }
+}
@@ -4,6 +4,11 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
 class ArrayLengthDef implements SimpleMemberDefinition {
+    @Override
+    public String getSharingKey() {
+        return "arraylength";
+    }
+
     @Override
     public boolean matches(AbstractInsnNode insn) {
         return insn.getOpcode() == Opcodes.ARRAYLENGTH;
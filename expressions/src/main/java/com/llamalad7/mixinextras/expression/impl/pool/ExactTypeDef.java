@@ -13,4 +13,9 @@ class ExactTypeDef implements TypeDefinition {
     public boolean matches(Type type) {
         return this.type.equals(type);
     }
+
+    @Override
+    public Type getExactType() {
+        return type;
+    }
 }
@@ -2,17 +2,35 @@ package com.llamalad7.mixinextras.expression.impl.pool;
 
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InsnList;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class IdentifierPool {
-    private final Map<String, List<MemberDefinition>> members = new HashMap<>();
-    private final Map<String, List<TypeDefinition>> types = new HashMap<>();
+    private final Map<String, List<MemberDefinition>> members;
+    private final Map<String, List<TypeDefinition>> types;
+    // Fully-qualified definitions are indexed by key, everything else is tried in turn.
+    private final Map<String, Set<String>> exactMembers;
+    private final Map<String, List<MemberDefinition>> inexactMembers;
+    private final Map<String, Set<Type>> exactTypes;
+    private final Map<String, List<TypeDefinition>> inexactTypes;
+    private final Set<String> sideEffectingMembers;
+    private final SharedMemberLookups lookups;
+    // Only views have these, since flow nodes must not outlive their target.
+    private final Map<String, Map<FlowValue, Boolean>> memberResults;
+    private final Map<FlowValue, Optional<String>> memberKeys;
 
     public IdentifierPool() {
+        this.members = new HashMap<>();
+        this.types = new HashMap<>();
+        this.exactMembers = new HashMap<>();
+        this.inexactMembers = new HashMap<>();
+        this.exactTypes = new HashMap<>();
+        this.inexactTypes = new HashMap<>();
+        this.sideEffectingMembers = new HashSet<>();
+        this.lookups = null;
+        this.memberResults = null;
+        this.memberKeys = null;
         addType("byte", new ExactTypeDef(Type.BYTE_TYPE));
         addType("char", new ExactTypeDef(Type.CHAR_TYPE));
         addType("double", new ExactTypeDef(Type.DOUBLE_TYPE));
@@ -23,12 +41,112 @@ public class IdentifierPool {
         addMember("length", new ArrayLengthDef());
     }
 
+    private IdentifierPool(IdentifierPool pool, SharedMemberLookups lookups) {
+        this.members = pool.members;
+        this.types = pool.types;
+        this.exactMembers = pool.exactMembers;
+        this.inexactMembers = pool.inexactMembers;
+        this.exactTypes = pool.exactTypes;
+        this.inexactTypes = pool.inexactTypes;
+        this.sideEffectingMembers = pool.sideEffectingMembers;
+        this.lookups = lookups;
+        this.memberResults = new HashMap<>();
+        this.memberKeys = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return a view of this pool which answers member lookups through {@code lookups}, so that definitions which
+     * other pools share don't have to be checked again. The view also remembers its own answers for each node, so it
+     * should not outlive the target it is used for.
+     */
+    public IdentifierPool withSharedLookups(SharedMemberLookups lookups) {
+        return new IdentifierPool(this, lookups);
+    }
+
     public boolean matchesMember(String id, FlowValue node) {
         List<MemberDefinition> matching = members.get(id);
         if (matching == null) {
             throw new IllegalStateException("Use of undeclared identifier '" + id + '\'');
         }
-        return matching.stream().anyMatch(it -> it.matches(node));
+        if (memberResults == null || sideEffectingMembers.contains(id)) {
+            return computeMatchesMember(id, node);
+        }
+        Map<FlowValue, Boolean> known = memberResults.computeIfAbsent(id, k -> new IdentityHashMap<>());
+        Boolean result = known.get(node);
+        if (result == null) {
+            result = computeMatchesMember(id, node);
+            known.put(node, result);
+        }
+        return result;
+    }
+
+    private boolean computeMatchesMember(String id, FlowValue node) {
+        Set<String> exact = exactMembers.get(id);
+        if (exact != null && exact.contains(getMemberKey(node))) {
+            return true;
+        }
+        List<MemberDefinition> inexact = inexactMembers.get(id);
+        if (inexact == null) {
+            return false;
+        }
+        if (lookups != null) {
+            return inexact.stream().anyMatch(it -> lookups.matches(it, node));
+        }
+        return inexact.stream().anyMatch(it -> it.matches(node));
+    }
+
+    private String getMemberKey(FlowValue node) {
+        if (memberKeys == null) {
+            return MemberKeys.of(node);
+        }
+        Optional<String> key = memberKeys.get(node);
+        if (key == null) {
+            key = Optional.ofNullable(MemberKeys.of(node));
+            memberKeys.put(node, key);
+        }
+        return key.orElse(null);
+    }
+
+    /**
+     * @return the names of all the members {@code id} could match, or {@code null} if they are not known up-front.
+     */
+    public Set<String> getMemberNames(String id) {
+        List<MemberDefinition> matching = members.get(id);
+        if (matching == null) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (MemberDefinition definition : matching) {
+            String name = definition.getName();
+            if (name == null) {
+                return null;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * @return whether anything {@code id} refers to could be in the given instructions. Undeclared ids are assumed to
+     * be present so that matching can report them.
+     */
+    public boolean memberMayOccurIn(String id, InsnList insns) {
+        List<MemberDefinition> matching = members.get(id);
+        return matching == null || matching.stream().anyMatch(it -> it.mayOccurIn(insns));
+    }
+
+    /**
+     * @return whether an expression which can't match may be skipped without trying it.
+     */
+    public boolean canSkipMatching() {
+        for (List<MemberDefinition> definitions : members.values()) {
+            for (MemberDefinition definition : definitions) {
+                if (definition.hasSideEffects()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     public boolean matchesType(String id, Type type) {
@@ -36,15 +154,35 @@ public class IdentifierPool {
         if (matching == null) {
             throw new IllegalStateException("Use of undeclared identifier '" + id + '\'');
         }
-        return matching.stream().anyMatch(it -> it.matches(type));
+        Set<Type> exact = exactTypes.get(id);
+        if (exact != null && exact.contains(type)) {
+            return true;
+        }
+        List<TypeDefinition> inexact = inexactTypes.get(id);
+        return inexact != null && inexact.stream().anyMatch(it -> it.matches(type));
     }
 
     public void addMember(String id, MemberDefinition entry) {
         members.computeIfAbsent(id, k -> new ArrayList<>()).add(entry);
+        String key = entry.getExactKey();
+        if (key != null) {
+            exactMembers.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+        } else {
+            inexactMembers.computeIfAbsent(id, k -> new ArrayList<>()).add(entry);
+        }
+        if (entry.hasSideEffects()) {
+            sideEffectingMembers.add(id);
+        }
     }
 
     public void addType(String id, TypeDefinition entry) {
         types.computeIfAbsent(id, k -> new ArrayList<>()).add(entry);
+        Type type = entry.getExactType();
+        if (type != null) {
+            exactTypes.computeIfAbsent(id, k -> new HashSet<>()).add(type);
+        } else {
+            inexactTypes.computeIfAbsent(id, k -> new ArrayList<>()).add(entry);
+        }
     }
 
     public boolean memberExists(String id) {
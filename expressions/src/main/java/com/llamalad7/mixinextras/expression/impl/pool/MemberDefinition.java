@@ -1,7 +1,46 @@
 package com.llamalad7.mixinextras.expression.impl.pool;
 
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import org.objectweb.asm.tree.InsnList;
 
 public interface MemberDefinition {
     boolean matches(FlowValue node);
+
+    /**
+     * @return the name every member matched by this definition has, or {@code null} if that is not known up-front.
+     */
+    default String getName() {
+        return null;
+    }
+
+    /**
+     * @return a key which any other definition matching exactly the same members would also have, or {@code null} if
+     * this definition's results can't be shared.
+     */
+    default String getSharingKey() {
+        return null;
+    }
+
+    /**
+     * @return the {@link MemberKeys key} of the one member this definition matches, or {@code null} if it could match
+     * more than one. Definitions with a key are looked up by hash and {@link #matches} is never called for them.
+     */
+    default String getExactKey() {
+        return null;
+    }
+
+    /**
+     * @return whether this definition could match anything in the given instructions, without analysing them.
+     */
+    default boolean mayOccurIn(InsnList insns) {
+        return true;
+    }
+
+    /**
+     * @return whether matching this definition does more than answer the question, in which case it must still be
+     * tried even when the expression could be ruled out early.
+     */
+    default boolean hasSideEffects() {
+        return false;
+    }
 }
@@ -0,0 +1,58 @@
+package com.llamalad7.mixinextras.expression.impl.pool;
+
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
+import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * Builds the keys which {@link MemberDefinition#getExactKey()} and flow nodes are compared by, so that fully-qualified
+ * definitions can be looked up by hash rather than tried one by one.
+ */
+public class MemberKeys {
+    public static String method(String owner, String name, String desc) {
+        return "method " + owner + '.' + name + desc;
+    }
+
+    public static String field(String owner, String name, String desc) {
+        return "field " + owner + '.' + name + ':' + desc;
+    }
+
+    /**
+     * @return the key of the one member the given node refers to, or {@code null} if it doesn't refer to one
+     */
+    public static String of(FlowValue node) {
+        LMFInfo lmfInfo = node.getDecoration(FlowDecorations.LMF_INFO);
+        if (lmfInfo != null) {
+            return of(lmfInfo.impl);
+        }
+        return of(node.getInsn());
+    }
+
+    private static String of(AbstractInsnNode insn) {
+        if (insn instanceof MethodInsnNode) {
+            MethodInsnNode methodNode = (MethodInsnNode) insn;
+            return method(methodNode.owner, methodNode.name, methodNode.desc);
+        }
+        if (insn instanceof FieldInsnNode) {
+            FieldInsnNode fieldNode = (FieldInsnNode) insn;
+            return field(fieldNode.owner, fieldNode.name, fieldNode.desc);
+        }
+        return null;
+    }
+
+    private static String of(Handle handle) {
+        switch (handle.getTag()) {
+            case Opcodes.H_INVOKEVIRTUAL:
+            case Opcodes.H_INVOKESTATIC:
+            case Opcodes.H_INVOKESPECIAL:
+            case Opcodes.H_INVOKEINTERFACE:
+                return method(handle.getOwner(), handle.getName(), handle.getDesc());
+        }
+        return null;
+    }
+}
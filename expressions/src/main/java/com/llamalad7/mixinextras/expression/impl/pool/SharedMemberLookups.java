@@ -0,0 +1,29 @@
+package com.llamalad7.mixinextras.expression.impl.pool;
+
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which nodes each definition matched, so that identical definitions from different injectors are only
+ * checked once per node. Flow nodes belong to a single target, so an instance should not outlive its target.
+ */
+public class SharedMemberLookups {
+    private final Map<String, Map<FlowValue, Boolean>> results = new HashMap<>();
+
+    public boolean matches(MemberDefinition definition, FlowValue node) {
+        String key = definition.getSharingKey();
+        if (key == null) {
+            return definition.matches(node);
+        }
+        Map<FlowValue, Boolean> known = results.computeIfAbsent(key, k -> new IdentityHashMap<>());
+        Boolean result = known.get(node);
+        if (result == null) {
+            result = definition.matches(node);
+            known.put(node, result);
+        }
+        return result;
+    }
+}
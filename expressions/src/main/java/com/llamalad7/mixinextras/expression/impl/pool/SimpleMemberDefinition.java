@@ -5,6 +5,8 @@ import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
 
 public interface SimpleMemberDefinition extends MemberDefinition {
     boolean matches(AbstractInsnNode insn);
@@ -21,4 +23,22 @@ public interface SimpleMemberDefinition extends MemberDefinition {
         }
         return matches(node.getInsn());
     }
+
+    @Override
+    default boolean mayOccurIn(InsnList insns) {
+        for (AbstractInsnNode insn : insns) {
+            if (matches(insn)) {
+                return true;
+            }
+            if (insn instanceof InvokeDynamicInsnNode) {
+                // Method references end up matching against the implementation handle.
+                for (Object arg : ((InvokeDynamicInsnNode) insn).bsmArgs) {
+                    if (arg instanceof Handle && matches((Handle) arg)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -4,4 +4,11 @@ import org.objectweb.asm.Type;
 
 public interface TypeDefinition {
     boolean matches(Type type);
+
+    /**
+     * @return the one type this definition matches, or {@code null} if it could match more than one
+     */
+    default Type getExactType() {
+        return null;
+    }
 }
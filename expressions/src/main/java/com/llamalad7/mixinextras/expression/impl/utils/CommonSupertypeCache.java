@@ -0,0 +1,84 @@
+package com.llamalad7.mixinextras.expression.impl.utils;
+
+import com.llamalad7.mixinextras.expression.impl.ExpressionService;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowContext;
+import com.llamalad7.mixinextras.expression.impl.flow.ParallelFlowAnalysis;
+import org.objectweb.asm.Type;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the common superclasses the {@link ExpressionService} has worked out. Finding one may mean walking and
+ * loading whole class hierarchies, and the same pairs come up over and over again while merging frames.
+ * Only pairs of object types get this far, since {@link ExpressionASMUtils#getCommonSupertype} settles everything
+ * else itself.
+ * The answer is up to the service and may depend on the context it is given, so both are part of the key.
+ */
+public class CommonSupertypeCache {
+    private static final int MAX_CACHED_PAIRS = 8192;
+    private static final Map<Key, Type> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<Key, Type>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Type> eldest) {
+                    return size() > MAX_CACHED_PAIRS;
+                }
+            }
+    );
+
+    public static Type getCommonSuperClass(FlowContext ctx, Type type1, Type type2) {
+        if (type1.equals(ExpressionASMUtils.OBJECT_TYPE) || type2.equals(ExpressionASMUtils.OBJECT_TYPE)) {
+            return ExpressionASMUtils.OBJECT_TYPE;
+        }
+        ExpressionService service = ExpressionService.getInstance();
+        Key key = new Key(service, ctx, type1, type2);
+        Type cached = CACHE.get(key);
+        if (cached != null) {
+            ExpressionProfiler.count("common superclass cache hits");
+            return cached;
+        }
+        // Don't hold the lock while resolving, since that can load classes. The service is only ever used from the
+        // thread doing the transformation, even when the analysis is running elsewhere.
+        long start = ExpressionProfiler.now();
+        Type result = ParallelFlowAnalysis.onOwnerThread(
+                () -> service.getCommonSuperClass(ctx, type1, type2)
+        );
+        ExpressionProfiler.count("common superclasses resolved", start);
+        CACHE.put(key, result);
+        return result;
+    }
+
+    private static class Key {
+        private final ExpressionService service;
+        private final FlowContext ctx;
+        private final Type type1;
+        private final Type type2;
+
+        private Key(ExpressionService service, FlowContext ctx, Type type1, Type type2) {
+            this.service = service;
+            this.ctx = ctx;
+            this.type1 = type1;
+            this.type2 = type2;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return service == other.service && ctx == other.ctx
+                    && type1.equals(other.type1) && type2.equals(other.type2);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(service), System.identityHashCode(ctx), type1, type2);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.llamalad7.mixinextras.expression.impl.utils;
 
-import com.llamalad7.mixinextras.expression.impl.ExpressionService;
 import com.llamalad7.mixinextras.expression.impl.flow.Boxing;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowContext;
 import org.apache.commons.lang3.StringUtils;
@@ -14,6 +13,9 @@ import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -328,7 +330,7 @@ public class ExpressionASMUtils {
         if (type1.getSort() != type2.getSort()) {
             return BOTTOM_TYPE;
         }
-        return ExpressionService.getInstance().getCommonSuperClass(ctx, type1, type2);
+        return CommonSupertypeCache.getCommonSuperClass(ctx, type1, type2);
     }
 
     public static Type getCommonIntType(FlowContext ctx, Type type1, Type type2) {
@@ -399,6 +401,24 @@ public class ExpressionASMUtils {
         return Bytecode.getConstant(insn);
     }
 
+    /**
+     * @return the labels the given instruction can jump to, not counting the instruction after it
+     */
+    public static List<LabelNode> getJumpTargets(AbstractInsnNode insn) {
+        if (insn instanceof JumpInsnNode) {
+            return Collections.singletonList(((JumpInsnNode) insn).label);
+        }
+        List<LabelNode> result = new ArrayList<>();
+        if (insn instanceof TableSwitchInsnNode) {
+            result.add(((TableSwitchInsnNode) insn).dflt);
+            result.addAll(((TableSwitchInsnNode) insn).labels);
+        } else if (insn instanceof LookupSwitchInsnNode) {
+            result.add(((LookupSwitchInsnNode) insn).dflt);
+            result.addAll(((LookupSwitchInsnNode) insn).labels);
+        }
+        return result;
+    }
+
     public static AbstractInsnNode pushInt(int integer) {
         switch (integer) {
             case -1:
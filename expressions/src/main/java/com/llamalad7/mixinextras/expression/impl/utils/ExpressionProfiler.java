@@ -0,0 +1,384 @@
+package com.llamalad7.mixinextras.expression.impl.utils;
+
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.MatchResult;
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.FlowPostProcessor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Records where the time goes for each expression injector and target, so that slow ones can be found. Enabled with
+ * {@code -Dmixinextras.expressions.profile=true}; every entry point returns straight away otherwise.
+ * <p>
+ * Each injection point lookup is also reported as a JFR event when JFR is available, and {@link #getSummary()} lists
+ * the totals, slowest first.
+ */
+public class ExpressionProfiler {
+    public static final boolean ENABLED = Boolean.getBoolean("mixinextras.expressions.profile");
+
+    private static final Map<String, Record> RECORDS = new HashMap<>();
+    private static final Map<String, Tally> EVENTS = new TreeMap<>();
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Starts attributing work on this thread to the given injector and target.
+     *
+     * @return the scope to {@link Scope#close() close} once done, or {@code null} when profiling is disabled
+     */
+    public static Scope begin(Object injector, Object target) {
+        if (!ENABLED) {
+            return null;
+        }
+        Scope scope = new Scope(String.valueOf(injector), String.valueOf(target), CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the time to pass to one of the {@code record} methods, or {@code 0} when profiling is disabled
+     */
+    public static long now() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public static void recordAnalysis(long start) {
+        Scope scope;
+        if (ENABLED && (scope = CURRENT.get()) != null) {
+            scope.record.analysisNanos += System.nanoTime() - start;
+        }
+    }
+
+    public static void recordMatching(long start) {
+        Scope scope;
+        if (ENABLED && (scope = CURRENT.get()) != null) {
+            scope.record.matchNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Unlike the other {@code record} methods, this takes the time spent rather than when it started, since
+     * post-processors which share a sweep take turns on each flow.
+     */
+    public static void recordPostProcessing(FlowPostProcessor postProcessor, long nanos) {
+        Scope scope;
+        if (!ENABLED || (scope = CURRENT.get()) == null) {
+            return;
+        }
+        String name = postProcessor.getClass().getSimpleName();
+        scope.record.postProcessingNanos.merge(name, nanos, Long::sum);
+        JfrEvents.postProcessing(scope.record.injector, scope.record.target, name, nanos);
+    }
+
+    public static void recordAttempt(MatchResult result) {
+        Scope scope;
+        if (!ENABLED || (scope = CURRENT.get()) == null) {
+            return;
+        }
+        Record record = scope.record;
+        record.flowsScanned++;
+        if (result == MatchResult.MATCH) {
+            record.matches++;
+        } else if (result == MatchResult.COMPLEX) {
+            record.complexBailouts++;
+        }
+    }
+
+    /**
+     * Counts something which isn't tied to any one injector, such as a cache hit, towards the summary.
+     */
+    public static void count(String event) {
+        if (ENABLED) {
+            tally(event, 0L);
+        }
+    }
+
+    /**
+     * Like {@link #count(String)}, but also adds up the time since {@code start}.
+     */
+    public static void count(String event, long start) {
+        if (ENABLED) {
+            tally(event, System.nanoTime() - start);
+        }
+    }
+
+    private static void tally(String event, long nanos) {
+        synchronized (EVENTS) {
+            Tally tally = EVENTS.computeIfAbsent(event, k -> new Tally());
+            tally.count++;
+            tally.nanos += nanos;
+        }
+    }
+
+    /**
+     * @return one line for everything that was profiled, one for the {@link #count counted} events if there were any,
+     * followed by one for each injector and target, slowest first
+     */
+    public static List<String> getSummary() {
+        List<Record> records;
+        synchronized (RECORDS) {
+            records = new ArrayList<>(RECORDS.values());
+        }
+        records.sort(Comparator.comparingLong(Record::getTotalNanos).reversed());
+        long analysis = 0;
+        long matching = 0;
+        long flows = 0;
+        for (Record record : records) {
+            analysis += record.analysisNanos;
+            matching += record.matchNanos;
+            flows += record.flowsScanned;
+        }
+        List<String> result = new ArrayList<>();
+        result.add(String.format(
+                "%d expression injector targets: analysis %s, matching %s, %d flows scanned",
+                records.size(), formatNanos(analysis), formatNanos(matching), flows
+        ));
+        StringBuilder events = new StringBuilder();
+        synchronized (EVENTS) {
+            for (Map.Entry<String, Tally> entry : EVENTS.entrySet()) {
+                events.append(events.length() == 0 ? "events: " : ", ").append(entry.getKey()).append(' ')
+                        .append(entry.getValue());
+            }
+        }
+        if (events.length() != 0) {
+            result.add(events.toString());
+        }
+        for (Record record : records) {
+            result.add(record.toString());
+        }
+        return result;
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+    public static class Scope implements AutoCloseable {
+        private final Record record;
+        private final Scope outer;
+        private final Object event;
+
+        private Scope(String injector, String target, Scope outer) {
+            this.record = new Record(injector, target);
+            this.outer = outer;
+            this.event = JfrEvents.beginLookup();
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+            JfrEvents.commitLookup(event, record);
+            synchronized (RECORDS) {
+                RECORDS.computeIfAbsent(record.getKey(), k -> new Record(record.injector, record.target)).add(record);
+            }
+        }
+    }
+
+    private static class Tally {
+        private long count;
+        private long nanos;
+
+        @Override
+        public String toString() {
+            return nanos == 0 ? String.valueOf(count) : String.format("%d (%s)", count, formatNanos(nanos));
+        }
+    }
+
+    private static class Record {
+        private final String injector;
+        private final String target;
+        private final Map<String, Long> postProcessingNanos = new TreeMap<>();
+        private long analysisNanos;
+        private long matchNanos;
+        private long flowsScanned;
+        private long matches;
+        private long complexBailouts;
+
+        private Record(String injector, String target) {
+            this.injector = injector;
+            this.target = target;
+        }
+
+        private String getKey() {
+            return injector + " -> " + target;
+        }
+
+        private long getTotalNanos() {
+            return analysisNanos + matchNanos;
+        }
+
+        private long getPostProcessingNanos() {
+            long result = 0;
+            for (long nanos : postProcessingNanos.values()) {
+                result += nanos;
+            }
+            return result;
+        }
+
+        private void add(Record other) {
+            analysisNanos += other.analysisNanos;
+            matchNanos += other.matchNanos;
+            flowsScanned += other.flowsScanned;
+            matches += other.matches;
+            complexBailouts += other.complexBailouts;
+            other.postProcessingNanos.forEach((k, v) -> postProcessingNanos.merge(k, v, Long::sum));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder postProcessing = new StringBuilder();
+            for (Map.Entry<String, Long> entry : postProcessingNanos.entrySet()) {
+                postProcessing.append(postProcessing.length() == 0 ? " (" : ", ")
+                        .append(entry.getKey()).append(' ').append(formatNanos(entry.getValue()));
+            }
+            if (postProcessing.length() != 0) {
+                postProcessing.append(')');
+            }
+            return String.format(
+                    "%s: analysis %s, post-processing %s%s, matching %s, %d flows scanned, %d matches, %d complex bailouts",
+                    getKey(), formatNanos(analysisNanos), formatNanos(getPostProcessingNanos()), postProcessing,
+                    formatNanos(matchNanos), flowsScanned, matches, complexBailouts
+            );
+        }
+    }
+
+    /**
+     * The events are defined through {@code jdk.jfr.EventFactory} by reflection, since we still have to run on Java 8.
+     * If JFR isn't there they are simply not emitted.
+     */
+    private static class JfrEvents {
+        private static final Object LOOKUP_FACTORY;
+        private static final Object POST_PROCESSING_FACTORY;
+        private static final Method NEW_EVENT;
+        private static final Method BEGIN;
+        private static final Method END;
+        private static final Method SET;
+        private static final Method COMMIT;
+
+        static {
+            Object lookupFactory = null;
+            Object postProcessingFactory = null;
+            Method newEvent = null, begin = null, end = null, set = null, commit = null;
+            if (ENABLED) {
+                try {
+                    lookupFactory = createFactory(
+                            "mixinextras.ExpressionLookup", "Expression Lookup",
+                            "Finding the instructions an expression injector matches in one target",
+                            field(String.class, "injector", "Injector", false),
+                            field(String.class, "target", "Target", false),
+                            field(long.class, "analysisTime", "Analysis Time", true),
+                            field(long.class, "postProcessingTime", "Post-processing Time", true),
+                            field(long.class, "matchTime", "Match Time", true),
+                            field(long.class, "flowsScanned", "Flows Scanned", false),
+                            field(long.class, "matches", "Matches", false),
+                            field(long.class, "complexBailouts", "Complex Bailouts", false)
+                    );
+                    postProcessingFactory = createFactory(
+                            "mixinextras.FlowPostProcessing", "Flow Post-processing",
+                            "One flow post-processor's pass over the value flow of a target",
+                            field(String.class, "injector", "Injector", false),
+                            field(String.class, "target", "Target", false),
+                            field(String.class, "postProcessor", "Post-processor", false),
+                            field(long.class, "processingTime", "Processing Time", true)
+                    );
+                    Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                    Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                    newEvent = factoryClass.getMethod("newEvent");
+                    begin = eventClass.getMethod("begin");
+                    end = eventClass.getMethod("end");
+                    set = eventClass.getMethod("set", int.class, Object.class);
+                    commit = eventClass.getMethod("commit");
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    lookupFactory = null;
+                    postProcessingFactory = null;
+                }
+            }
+            LOOKUP_FACTORY = lookupFactory;
+            POST_PROCESSING_FACTORY = postProcessingFactory;
+            NEW_EVENT = newEvent;
+            BEGIN = begin;
+            END = end;
+            SET = set;
+            COMMIT = commit;
+        }
+
+        private static Object beginLookup() {
+            if (LOOKUP_FACTORY == null) {
+                return null;
+            }
+            try {
+                Object event = NEW_EVENT.invoke(LOOKUP_FACTORY);
+                BEGIN.invoke(event);
+                return event;
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        private static void commitLookup(Object event, Record record) {
+            if (event == null) {
+                return;
+            }
+            try {
+                END.invoke(event);
+                commit(
+                        event, record.injector, record.target, record.analysisNanos, record.getPostProcessingNanos(),
+                        record.matchNanos, record.flowsScanned, record.matches, record.complexBailouts
+                );
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+
+        private static void postProcessing(String injector, String target, String postProcessor, long nanos) {
+            if (POST_PROCESSING_FACTORY == null) {
+                return;
+            }
+            try {
+                commit(NEW_EVENT.invoke(POST_PROCESSING_FACTORY), injector, target, postProcessor, nanos);
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+
+        private static void commit(Object event, Object... values) throws ReflectiveOperationException {
+            for (int i = 0; i < values.length; i++) {
+                SET.invoke(event, i, values[i]);
+            }
+            COMMIT.invoke(event);
+        }
+
+        private static Object createFactory(String name, String label, String description, Object... fields)
+                throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(
+                    annotation("jdk.jfr.Name", name),
+                    annotation("jdk.jfr.Label", label),
+                    annotation("jdk.jfr.Description", description),
+                    annotation("jdk.jfr.Category", new String[]{"MixinExtras"})
+            );
+            return Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, Arrays.asList(fields));
+        }
+
+        private static Object field(Class<?> type, String name, String label, boolean timespan)
+                throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("jdk.jfr.Label", label));
+            if (timespan) {
+                annotations.add(annotation("jdk.jfr.Timespan", "NANOSECONDS"));
+            }
+            Constructor<?> constructor = Class.forName("jdk.jfr.ValueDescriptor")
+                    .getConstructor(Class.class, String.class, List.class);
+            return constructor.newInstance(type, name, annotations);
+        }
+
+        private static Object annotation(String type, Object value) throws ReflectiveOperationException {
+            Class<? extends Annotation> annotationType = Class.forName(type).asSubclass(Annotation.class);
+            return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class)
+                    .newInstance(annotationType, value);
+        }
+    }
+}
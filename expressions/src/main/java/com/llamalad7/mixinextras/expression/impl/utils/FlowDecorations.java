@@ -1,6 +1,8 @@
 package com.llamalad7.mixinextras.expression.impl.utils;
 
-import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.LMFInfo;
+import com.llamalad7.mixinextras.expression.impl.flow.DecorationKey;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.*;
 
 public class FlowDecorations {
     /**
@@ -11,30 +13,30 @@ public class FlowDecorations {
     /**
      * Stores information about this array creation.
      */
-    public static final String ARRAY_CREATION_INFO = PERSISTENT + "arrayCreationInfo";
+    public static final DecorationKey<ArrayCreationInfo> ARRAY_CREATION_INFO = DecorationKey.of(PERSISTENT + "arrayCreationInfo");
 
     /**
      * Stores information about this part of a string concatenation.
      */
-    public static final String STRING_CONCAT_INFO = "stringConcatInfo";
+    public static final DecorationKey<StringConcatInfo> STRING_CONCAT_INFO = DecorationKey.of("stringConcatInfo");
 
     /**
      * Stores information about this object instantiation.
      */
-    public static final String INSTANTIATION_INFO = "instantiationInfo";
+    public static final DecorationKey<InstantiationInfo> INSTANTIATION_INFO = DecorationKey.of("instantiationInfo");
 
     /**
      * Stores the jump instruction for this complex comparison.
      */
-    public static final String COMPLEX_COMPARISON_JUMP = "complexComparisonJump";
+    public static final DecorationKey<FlowValue> COMPLEX_COMPARISON_JUMP = DecorationKey.of("complexComparisonJump");
 
     /**
      * Stores the type of this method call.
      */
-    public static final String METHOD_CALL_TYPE = "methodCallType";
+    public static final DecorationKey<MethodCallType> METHOD_CALL_TYPE = DecorationKey.of("methodCallType");
 
     /**
      * Stores the {@link LMFInfo} of this LMF invocation.
      */
-    public static final String LMF_INFO = "lmfInfo";
+    public static final DecorationKey<LMFInfo> LMF_INFO = DecorationKey.of("lmfInfo");
 }
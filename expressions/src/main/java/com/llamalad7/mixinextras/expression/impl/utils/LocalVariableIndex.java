@@ -0,0 +1,125 @@
+package com.llamalad7.mixinextras.expression.impl.utils;
+
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.util.*;
+
+/**
+ * Answers which entry of a method's LVT covers a given slot at a given instruction, without scanning the whole LVT for
+ * every query. Instruction positions are captured on construction, so the index must be rebuilt if the method changes.
+ */
+public class LocalVariableIndex {
+    private final InsnList insns;
+    private final Map<Integer, Slot> slots = new HashMap<>();
+
+    public LocalVariableIndex(MethodNode method) {
+        this.insns = method.instructions;
+        if (method.localVariables == null) {
+            return;
+        }
+        Map<Integer, List<LocalVariableNode>> locals = new HashMap<>();
+        for (LocalVariableNode local : method.localVariables) {
+            if (local.desc != null) {
+                locals.computeIfAbsent(local.index, k -> new ArrayList<>()).add(local);
+            }
+        }
+        for (Map.Entry<Integer, List<LocalVariableNode>> entry : locals.entrySet()) {
+            slots.put(entry.getKey(), new Slot(entry.getValue()));
+        }
+    }
+
+    public LocalVariableNode getLocalVariableAt(VarInsnNode varInsn) {
+        return getLocalVariableAt(varInsn.var, insns.indexOf(varInsn));
+    }
+
+    /**
+     * @return the LVT entry for the given slot which covers the given instruction position, or null if there isn't one.
+     * If several entries cover it, the one which comes last in the LVT wins.
+     */
+    public LocalVariableNode getLocalVariableAt(int var, int pos) {
+        Slot slot = slots.get(var);
+        return slot == null ? null : slot.get(pos);
+    }
+
+    private class Slot {
+        private final int[] starts;
+        private final int[] ends;
+        private final LocalVariableNode[] locals;
+        private final boolean overlapping;
+
+        Slot(List<LocalVariableNode> entries) {
+            Integer[] order = new Integer[entries.size()];
+            int[] starts = new int[order.length];
+            int[] ends = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                LocalVariableNode local = entries.get(i);
+                order[i] = i;
+                starts[i] = insns.indexOf(local.start);
+                ends[i] = insns.indexOf(local.end);
+            }
+            // Stable, so entries with the same start keep their LVT order.
+            Arrays.sort(order, Comparator.comparingInt(i -> starts[i]));
+            this.starts = new int[order.length];
+            this.ends = new int[order.length];
+            this.locals = new LocalVariableNode[order.length];
+            boolean overlapping = false;
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < order.length; i++) {
+                int index = order[i];
+                this.starts[i] = starts[index];
+                this.ends[i] = ends[index];
+                this.locals[i] = entries.get(index);
+                if (starts[index] < ends[index]) {
+                    overlapping |= starts[index] < maxEnd;
+                    maxEnd = Math.max(maxEnd, ends[index]);
+                }
+            }
+            this.overlapping = overlapping;
+            if (overlapping) {
+                // Fall back to checking every entry in LVT order so the last covering entry still wins.
+                for (int i = 0; i < order.length; i++) {
+                    this.starts[i] = starts[i];
+                    this.ends[i] = ends[i];
+                    this.locals[i] = entries.get(i);
+                }
+            }
+        }
+
+        LocalVariableNode get(int pos) {
+            if (overlapping) {
+                LocalVariableNode result = null;
+                for (int i = 0; i < locals.length; i++) {
+                    if (starts[i] <= pos && ends[i] > pos) {
+                        result = locals[i];
+                    }
+                }
+                return result;
+            }
+            int low = 0;
+            int high = starts.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= pos) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            // Empty ranges are skipped by walking back, since they can't cover anything.
+            for (int i = found; i >= 0; i--) {
+                if (ends[i] > pos) {
+                    return locals[i];
+                }
+                if (starts[i] < ends[i]) {
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+}
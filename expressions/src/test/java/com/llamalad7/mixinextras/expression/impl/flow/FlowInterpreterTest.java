@@ -0,0 +1,71 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.InstantiationInfo;
+import com.llamalad7.mixinextras.expression.impl.flow.postprocessing.MethodCallType;
+import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowInterpreterTest {
+    private static final String OWNER = "Target";
+    private static final String SUPER = "Base";
+
+    /**
+     * Tagging a {@code super} call unlinks its receiver, which leaves its other inputs without their children until the
+     * graph is tidied up. An instantiation passed to it must still find its {@code <init>} call.
+     */
+    @Test
+    public void instantiationPassedToSuperCall() {
+        ClassNode classNode = new ClassNode();
+        classNode.name = OWNER;
+        classNode.superName = SUPER;
+        MethodNode methodNode = new MethodNode(0, "method", "(Ljava/lang/Object;)V", null, null);
+        classNode.methods.add(methodNode);
+        // super.method(new StringBuilder(String.valueOf(o)));
+        TypeInsnNode newBuilder = new TypeInsnNode(Opcodes.NEW, "java/lang/StringBuilder");
+        MethodInsnNode init = new MethodInsnNode(
+                Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V", false
+        );
+        MethodInsnNode superCall = new MethodInsnNode(
+                Opcodes.INVOKESPECIAL, SUPER, "method", "(Ljava/lang/Object;)V", false
+        );
+        methodNode.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        methodNode.instructions.add(newBuilder);
+        methodNode.instructions.add(new InsnNode(Opcodes.DUP));
+        methodNode.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+        methodNode.instructions.add(new MethodInsnNode(
+                Opcodes.INVOKESTATIC, "java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false
+        ));
+        methodNode.instructions.add(init);
+        methodNode.instructions.add(superCall);
+        methodNode.instructions.add(new InsnNode(Opcodes.RETURN));
+        methodNode.maxStack = 4;
+        methodNode.maxLocals = 2;
+
+        Collection<FlowValue> flows = FlowInterpreter.analyze(classNode, methodNode, null);
+
+        FlowValue instantiation = findFlow(flows, newBuilder);
+        InstantiationInfo info = instantiation.getDecoration(FlowDecorations.INSTANTIATION_INFO);
+        assertNotNull(info);
+        assertSame(init, info.initCall.getInsn());
+        FlowValue call = findFlow(flows, superCall);
+        assertEquals(MethodCallType.SUPER, call.getDecoration(FlowDecorations.METHOD_CALL_TYPE));
+        assertEquals(1, call.inputCount());
+        assertSame(instantiation, call.getInput(0));
+        assertNull(findFlow(flows, init));
+    }
+
+    private static FlowValue findFlow(Collection<FlowValue> flows, AbstractInsnNode insn) {
+        for (FlowValue flow : flows) {
+            if (flow.getInsn() == insn) {
+                return flow;
+            }
+        }
+        return null;
+    }
+}
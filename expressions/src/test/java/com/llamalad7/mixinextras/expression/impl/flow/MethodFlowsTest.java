@@ -0,0 +1,112 @@
+package com.llamalad7.mixinextras.expression.impl.flow;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stands in for two injectors into the same target: the first redirects {@code foo()}, and the second then looks for
+ * {@code foo() + x}.
+ */
+public class MethodFlowsTest {
+    private static final String OWNER = "Target";
+
+    private final ClassNode classNode = new ClassNode();
+    private final MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "method", "(I)I", null, null);
+    private final MethodInsnNode call = new MethodInsnNode(Opcodes.INVOKESTATIC, OWNER, "foo", "()I", false);
+    private final InsnNode add = new InsnNode(Opcodes.IADD);
+
+    public MethodFlowsTest() {
+        classNode.name = OWNER;
+        classNode.superName = "java/lang/Object";
+        classNode.methods.add(methodNode);
+        // int y = foo() + x;
+        methodNode.instructions.add(call);
+        methodNode.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        methodNode.instructions.add(add);
+        methodNode.instructions.add(new VarInsnNode(Opcodes.ISTORE, 1));
+        // return y + 1;
+        methodNode.instructions.add(new VarInsnNode(Opcodes.ILOAD, 1));
+        methodNode.instructions.add(new InsnNode(Opcodes.ICONST_1));
+        methodNode.instructions.add(new InsnNode(Opcodes.IADD));
+        methodNode.instructions.add(new InsnNode(Opcodes.IRETURN));
+        methodNode.maxStack = 2;
+        methodNode.maxLocals = 2;
+    }
+
+    @Test
+    public void flowsStayOnOriginalCodeUntilUpdated() {
+        MethodFlows flows = analyze();
+        MethodInsnNode handler = redirect();
+
+        // A later injector still sees `foo() + x`, and the addition it would match is still in the method.
+        FlowValue sum = findFlow(flows.getFlows(), add);
+        assertSame(call, sum.getInput(0).getInsn());
+        assertTrue(methodNode.instructions.contains(add));
+        assertNull(findFlow(flows.getFlows(), handler));
+    }
+
+    @Test
+    public void updateFollowsChanges() {
+        MethodFlows flows = analyze();
+        FlowValue untouched = findFlow(flows.getFlows(), methodNode.instructions.get(6));
+        MethodInsnNode handler = redirect();
+
+        assertTrue(flows.update());
+        FlowValue sum = findFlow(flows.getFlows(), add);
+        assertSame(handler, sum.getInput(0).getInsn());
+        assertNull(findFlow(flows.getFlows(), call));
+        // Only the changed statement should have been interpreted again.
+        assertSame(untouched, findFlow(flows.getFlows(), methodNode.instructions.get(6)));
+        assertEquals(describe(analyze().getFlows()), describe(flows.getFlows()));
+    }
+
+    @Test
+    public void updateWithoutChanges() {
+        MethodFlows flows = analyze();
+        Collection<FlowValue> before = new ArrayList<>(flows.getFlows());
+
+        assertFalse(flows.update());
+        assertEquals(before.size(), flows.getFlows().size());
+        assertTrue(flows.getFlows().containsAll(before));
+    }
+
+    private MethodFlows analyze() {
+        return MethodFlows.analyze(classNode, methodNode, null);
+    }
+
+    private MethodInsnNode redirect() {
+        MethodInsnNode handler = new MethodInsnNode(Opcodes.INVOKESTATIC, OWNER, "handler", "()I", false);
+        methodNode.instructions.set(call, handler);
+        return handler;
+    }
+
+    private static FlowValue findFlow(Collection<FlowValue> flows, AbstractInsnNode insn) {
+        for (FlowValue flow : flows) {
+            if (flow.getInsn() == insn) {
+                return flow;
+            }
+        }
+        return null;
+    }
+
+    private Set<String> describe(Collection<FlowValue> flows) {
+        Set<String> result = new TreeSet<>();
+        for (FlowValue flow : flows) {
+            StringBuilder description = new StringBuilder(describe(flow.getInsn())).append(' ').append(flow.getType());
+            for (int i = 0; i < flow.inputCount(); i++) {
+                description.append(i == 0 ? " <- " : ", ").append(describe(flow.getInput(i).getInsn()));
+            }
+            result.add(description.toString());
+        }
+        return result;
+    }
+
+    private String describe(AbstractInsnNode insn) {
+        return insn.getOpcode() + "@" + methodNode.instructions.indexOf(insn);
+    }
+}
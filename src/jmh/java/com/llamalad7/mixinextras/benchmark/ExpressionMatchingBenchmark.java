@@ -0,0 +1,166 @@
+package com.llamalad7.mixinextras.benchmark;
+
+import com.llamalad7.mixinextras.expression.impl.ExpressionService;
+import com.llamalad7.mixinextras.expression.impl.ast.expressions.*;
+import com.llamalad7.mixinextras.expression.impl.ast.identifiers.WildcardIdentifier;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowContext;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowInterpreter;
+import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowIndex;
+import com.llamalad7.mixinextras.expression.impl.point.ExpressionContext;
+import com.llamalad7.mixinextras.expression.impl.point.TargetMatcher;
+import com.llamalad7.mixinextras.expression.impl.pool.IdentifierPool;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TargetMatcher#matchAll} with wildcard-heavy expressions over methods whose flows merge values of
+ * different types. Those merges are {@link FlowValue#isComplex() complex}, so many attempts end in
+ * {@link MatchResult#COMPLEX} rather than a plain match or mismatch. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpressionMatchingBenchmark {
+    private static final String[] CLASSES = {
+            "org/objectweb/asm/ClassReader",
+            "org/objectweb/asm/MethodWriter",
+            "org/objectweb/asm/Frame",
+            "org/apache/commons/lang3/StringUtils",
+            "org/apache/commons/lang3/ArrayUtils",
+    };
+
+    private static final Expression.OutputSink SINK = new Expression.OutputSink() {
+        @Override
+        public void capture(FlowValue node, Expression expr, ExpressionContext ctx) {
+        }
+
+        @Override
+        public void decorate(AbstractInsnNode insn, String key, Object value) {
+        }
+
+        @Override
+        public void decorateInjectorSpecific(AbstractInsnNode insn, String key, Object value) {
+        }
+    };
+
+    static {
+        ExpressionService.offerInstance(new ExpressionService() {
+            @Override
+            public Type getCommonSuperClass(FlowContext ctx, Type type1, Type type2) {
+                // Only affects the types of merged values, which none of the expressions look at.
+                return Type.getType(Object.class);
+            }
+        });
+    }
+
+    private final List<Target> targets = new ArrayList<>();
+    private List<Expression> expressions;
+
+    @Setup
+    public void setup() throws IOException {
+        for (String name : CLASSES) {
+            ClassNode classNode = readClass(name);
+            for (MethodNode method : classNode.methods) {
+                if (method.instructions.size() == 0) {
+                    continue;
+                }
+                Collection<FlowValue> flows = FlowInterpreter.analyze(classNode, method, null);
+                if (hasComplexInput(flows)) {
+                    targets.add(new Target(classNode, method, flows));
+                }
+            }
+        }
+        expressions = Arrays.asList(
+                // ?.?().?()
+                call(call(wildcard())),
+                // ?.?()[?]
+                new ArrayAccessExpression(null, call(wildcard()), wildcard()),
+                // (? + ?) + ?
+                new BinaryExpression(
+                        null,
+                        new BinaryExpression(null, wildcard(), BinaryExpression.Operator.PLUS, wildcard()),
+                        BinaryExpression.Operator.PLUS,
+                        wildcard()
+                ),
+                // (?) ?.?
+                new CastExpression(null, new WildcardIdentifier(), field(wildcard())),
+                // ? = ?.?.?()
+                new IdentifierAssignmentExpression(null, new WildcardIdentifier(), call(field(wildcard()))),
+                // return ? + ?.?()
+                new ReturnExpression(
+                        null, new BinaryExpression(null, wildcard(), BinaryExpression.Operator.PLUS, call(wildcard()))
+                )
+        );
+    }
+
+    @Benchmark
+    public void matchAll(Blackhole blackhole) {
+        for (Target target : targets) {
+            target.matcher.matchAll(expressions, target.ctx, blackhole::consume);
+        }
+    }
+
+    private static ClassNode readClass(String name) throws IOException {
+        try (InputStream in = ExpressionMatchingBenchmark.class.getClassLoader().getResourceAsStream(name + ".class")) {
+            if (in == null) {
+                throw new IOException("Could not find " + name);
+            }
+            ClassNode classNode = new ClassNode();
+            new ClassReader(in).accept(classNode, 0);
+            return classNode;
+        }
+    }
+
+    private static boolean hasComplexInput(Collection<FlowValue> flows) {
+        for (FlowValue flow : flows) {
+            for (int i = 0; i < flow.inputCount(); i++) {
+                if (flow.getInput(i).isComplex()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Expression wildcard() {
+        return new WildcardExpression(null);
+    }
+
+    private static Expression field(Expression receiver) {
+        return new MemberAccessExpression(null, receiver, new WildcardIdentifier());
+    }
+
+    private static Expression call(Expression receiver) {
+        return new MethodCallExpression(null, receiver, new WildcardIdentifier(), Collections.emptyList());
+    }
+
+    private static class Target {
+        private final TargetMatcher matcher;
+        private final ExpressionContext ctx;
+
+        private Target(ClassNode classNode, MethodNode method, Collection<FlowValue> flows) {
+            this.matcher = new TargetMatcher(new FlowIndex(flows));
+            this.ctx = new ExpressionContext(
+                    matcher.share(new IdentifierPool()), SINK, classNode, method, ExpressionContext.Type.CUSTOM, true
+            );
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.llamalad7.mixinextras.benchmark;
+
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.utils.OperationUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what calling an instance method wrapped with an operation costs, with and without
+ * {@link OperationUtils#REUSE_OPERATIONS}. The handlers are never inlined, so the operation always escapes and has to be
+ * allocated unless it is reused. Run with {@code ./gradlew jmh} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationAllocationBenchmark {
+    private static final String REUSE_OPERATIONS = "-Dmixinextras.reuseOperations=true";
+    private static final String GENERATED = "com/llamalad7/mixinextras/benchmark/GeneratedWrapped";
+
+    public interface IntOperation {
+        int call(int x);
+    }
+
+    public static abstract class Wrapped {
+        public abstract int boxed(int x);
+
+        public abstract int typed(int x);
+
+        public int original(int x) {
+            return x + 1;
+        }
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public static int handler(int x, Operation<Integer> original) {
+        return original.call(x);
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public static int typedHandler(int x, IntOperation original) {
+        return original.call(x);
+    }
+
+    private Wrapped wrapped;
+    private int x;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        wrapped = (Wrapped) new Loader().define(generate()).getConstructor().newInstance();
+    }
+
+    @Benchmark
+    public int boxed() {
+        return wrapped.boxed(x++ & 63);
+    }
+
+    @Benchmark
+    public int typed() {
+        return wrapped.typed(x++ & 63);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = REUSE_OPERATIONS)
+    public int boxedReused() {
+        return wrapped.boxed(x++ & 63);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = REUSE_OPERATIONS)
+    public int typedReused() {
+        return wrapped.typed(x++ & 63);
+    }
+
+    /**
+     * Generates a {@link Wrapped} whose methods each call {@code original} through a handler, the way a
+     * {@code WrapOperation} on that call in an instance method would.
+     */
+    private static byte[] generate() {
+        ClassNode classNode = new ClassNode();
+        classNode.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, GENERATED, null, Type.getInternalName(Wrapped.class), null);
+        MethodNode init = new MethodNode(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        init.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, classNode.superName, "<init>", "()V", false));
+        init.instructions.add(new InsnNode(Opcodes.RETURN));
+        classNode.methods.add(init);
+
+        Type[] argTypes = {Type.INT_TYPE};
+        OperationUtils.OperationContents contents = (loadArg, loadArgs) -> {
+            InsnList insns = new InsnList();
+            loadArgs.accept(insns);
+            insns.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, GENERATED, "original", "(I)I", false));
+            return insns;
+        };
+        for (boolean typed : new boolean[]{false, true}) {
+            Type operationType = Type.getType(typed ? IntOperation.class : Operation.class);
+            MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, typed ? "typed" : "boxed", "(I)I", null, null);
+            InsnList insns = method.instructions;
+            insns.add(new VarInsnNode(Opcodes.ILOAD, 1));
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            if (typed) {
+                OperationUtils.makeTypedOperation(
+                        argTypes, Type.INT_TYPE, insns, true, new Type[0], classNode, operationType, "call", "typed",
+                        contents
+                );
+            } else {
+                OperationUtils.makeOperation(
+                        argTypes, Type.INT_TYPE, insns, true, new Type[0], classNode, operationType, "boxed", contents
+                );
+            }
+            insns.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC, Type.getInternalName(OperationAllocationBenchmark.class),
+                    typed ? "typedHandler" : "handler", Type.getMethodDescriptor(Type.INT_TYPE, Type.INT_TYPE, operationType),
+                    false
+            ));
+            insns.add(new InsnNode(Opcodes.IRETURN));
+            classNode.methods.add(method);
+        }
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static class Loader extends ClassLoader {
+        private Loader() {
+            super(OperationAllocationBenchmark.class.getClassLoader());
+        }
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+}
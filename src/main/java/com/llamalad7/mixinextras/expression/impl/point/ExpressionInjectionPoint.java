@@ -4,12 +4,16 @@ import com.llamalad7.mixinextras.expression.Definition;
 import com.llamalad7.mixinextras.expression.impl.ExpressionParserFacade;
 import com.llamalad7.mixinextras.expression.impl.ExpressionService;
 import com.llamalad7.mixinextras.expression.impl.ast.expressions.Expression;
-import com.llamalad7.mixinextras.expression.impl.flow.ComplexDataException;
+import com.llamalad7.mixinextras.expression.impl.flow.AnalysisBudgetException;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowInterpreter;
 import com.llamalad7.mixinextras.expression.impl.flow.FlowValue;
+import com.llamalad7.mixinextras.expression.impl.flow.MethodFlows;
+import com.llamalad7.mixinextras.expression.impl.flow.ParallelFlowAnalysis;
 import com.llamalad7.mixinextras.expression.impl.flow.expansion.InsnExpander;
+import com.llamalad7.mixinextras.expression.impl.flow.index.FlowIndex;
 import com.llamalad7.mixinextras.expression.impl.pool.BytecodeIdentifierPool;
 import com.llamalad7.mixinextras.expression.impl.pool.IdentifierPool;
+import com.llamalad7.mixinextras.expression.impl.utils.ExpressionProfiler;
 import com.llamalad7.mixinextras.expression.impl.utils.FlowDecorations;
 import com.llamalad7.mixinextras.injector.ModifyExpressionValueInjectionInfo;
 import com.llamalad7.mixinextras.injector.ModifyReceiverInjectionInfo;
@@ -21,6 +25,7 @@ import com.llamalad7.mixinextras.utils.*;
 import com.llamalad7.mixinextras.wrapper.WrapperInjectionInfo;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodNode;
 import org.spongepowered.asm.mixin.extensibility.IMixinConfig;
@@ -31,6 +36,7 @@ import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode
 import org.spongepowered.asm.util.Annotations;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -41,6 +47,19 @@ import java.util.stream.Collectors;
 public class ExpressionInjectionPoint extends InjectionPoint {
     private static List<Target> CURRENT_TARGETS;
     private static InjectionInfo CURRENT_INFO;
+    /**
+     * Whether to remember the results of capture-free sub-expressions while matching, so that shared inputs and repeated
+     * sub-expressions are only matched once per node.
+     */
+    private static final boolean MEMOIZE_MATCHES = Boolean.getBoolean("mixinextras.expressions.memoizeMatches");
+    /**
+     * Whether expressions should match a target as the injectors before them have left it. By default the value flow
+     * of a target is worked out once, the first time an expression looks at it, and every later expression matches
+     * against that, so e.g. a call which an earlier injector has redirected is still matched as the original call.
+     * When enabled, the flows are brought up to date with any changes before each lookup instead, and slices may be
+     * analysed on their own, since the flows no longer have to be the same for every injector.
+     */
+    private static final boolean MATCH_MODIFIED_CODE = Boolean.getBoolean("mixinextras.expressions.matchModifiedCode");
 
     private final int ordinal;
     private final String id;
@@ -53,6 +72,9 @@ public class ExpressionInjectionPoint extends InjectionPoint {
 
     static {
         ExpressionService.offerInstance(new RuntimeExpressionService());
+        if (ExpressionProfiler.ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(ExpressionInjectionPoint::logProfile, "MixinExtras expression profile"));
+        }
     }
 
     public ExpressionInjectionPoint(InjectionPointData data) {
@@ -70,11 +92,31 @@ public class ExpressionInjectionPoint extends InjectionPoint {
         Target target = getTarget(insns);
         if (!initialized) {
             initialize(target);
+            if (ParallelFlowAnalysis.ENABLED) {
+                prefetchFlows(target, insns);
+            }
+        }
+        if (!TargetDecorations.has(target, "ValueFlow") && !mayMatch(target)) {
+            ExpressionProfiler.count("value flow analyses avoided");
+            return false;
+        }
+        try (ExpressionProfiler.Scope ignored = ExpressionProfiler.begin(CURRENT_INFO, target)) {
+            return find(target, insns, nodes);
+        }
+    }
+
+    private boolean find(Target target, InsnList insns, Collection<AbstractInsnNode> nodes) {
+        TargetMatcher matcher;
+        try {
+            long analysisStart = ExpressionProfiler.now();
+            matcher = getMatcher(target, insns);
+            ExpressionProfiler.recordAnalysis(analysisStart);
+        } catch (AnalysisBudgetException e) {
+            throw ExpressionService.getInstance().makeInvalidInjectionException(
+                    CURRENT_INFO,
+                    String.format("%s could not be applied: %s", CURRENT_INFO, e.getMessage())
+            );
         }
-        Collection<FlowValue> flows =
-                TargetDecorations.getOrPut(target, "ValueFlow",
-                        () -> FlowInterpreter.analyze(CURRENT_INFO.getClassNode(), target.method, null)
-                );
         Set<AbstractInsnNode> result = new HashSet<>();
 
         Map<AbstractInsnNode, Map<String, Object>> genericDecorations = new IdentityHashMap<>();
@@ -129,27 +171,25 @@ public class ExpressionInjectionPoint extends InjectionPoint {
             }
         };
         ExpressionContext ctx = new ExpressionContext(
-                pool,
+                matcher.share(pool),
                 sink,
                 target.classNode,
                 target.method,
                 contextType,
-                false
+                false,
+                MEMOIZE_MATCHES ? new MatchMemo() : null
         );
 
-        for (Expression expr : expressions) {
-            for (FlowValue flow : flows) {
-                try {
-                    if (expr.matches(flow, ctx)) {
-                        result.addAll(captured);
-                    }
-                } catch (ComplexDataException ignored) {
-                }
-                genericDecorations.clear();
-                injectorSpecificDecorations.clear();
-                captured.clear();
+        long matchStart = ExpressionProfiler.now();
+        matcher.matchAll(expressions, ctx, matched -> {
+            if (matched) {
+                result.addAll(captured);
             }
-        }
+            genericDecorations.clear();
+            injectorSpecificDecorations.clear();
+            captured.clear();
+        });
+        ExpressionProfiler.recordMatching(matchStart);
         int i = 0;
         boolean found = false;
         for (ListIterator<AbstractInsnNode> it = insns.iterator(); it.hasNext(); ) {
@@ -167,6 +207,93 @@ public class ExpressionInjectionPoint extends InjectionPoint {
         return found;
     }
 
+    private TargetMatcher getMatcher(Target target, InsnList insns) {
+        AnalysisBudgetException failure = TargetDecorations.get(target, "ValueFlowFailure");
+        if (failure != null) {
+            // Don't make every other injector into this target wait for the analysis to give up again.
+            throw failure;
+        }
+        try {
+            return analyze(target, insns);
+        } catch (AnalysisBudgetException e) {
+            TargetDecorations.put(target, "ValueFlowFailure", e);
+            throw e;
+        }
+    }
+
+    private TargetMatcher analyze(Target target, InsnList insns) {
+        if (MATCH_MODIFIED_CODE && !TargetDecorations.has(target, "ValueFlow") && shouldAnalyzeSlice(target, insns)) {
+            Collection<FlowValue> flows = FlowInterpreter.analyzeRegion(
+                    CURRENT_INFO.getClassNode(), target.method, null, insns.getFirst(), insns.getLast()
+            );
+            if (flows != null) {
+                return new TargetMatcher(new FlowIndex(flows));
+            }
+            // The slice can't be analysed on its own, so share a full analysis with the other injectors instead.
+        }
+        MethodFlows methodFlows =
+                TargetDecorations.getOrPut(target, "ValueFlow",
+                        () -> MethodFlows.analyze(CURRENT_INFO.getClassNode(), target.method, null)
+                );
+        if (MATCH_MODIFIED_CODE && methodFlows.update()) {
+            // Earlier injectors have changed the method, so anything built from the old flows is out of date.
+            TargetDecorations.remove(target, "ExpressionMatcher");
+        }
+        Collection<FlowValue> flows = methodFlows.getFlows();
+        return TargetDecorations.getOrPut(target, "ExpressionMatcher", () -> new TargetMatcher(new FlowIndex(flows)));
+    }
+
+    /**
+     * Analyses every other target this injector could match in parallel, so the lookups which follow find their flows
+     * ready. When slices can be analysed on their own this is only done for injectors which look at whole methods,
+     * since the statements around a small slice are cheaper.
+     */
+    private void prefetchFlows(Target current, InsnList insns) {
+        if (MATCH_MODIFIED_CODE && insns.size() != current.method.instructions.size()) {
+            return;
+        }
+        List<Target> targets = new ArrayList<>();
+        List<Callable<MethodFlows>> tasks = new ArrayList<>();
+        ClassNode classNode = CURRENT_INFO.getClassNode();
+        for (Target target : CURRENT_TARGETS) {
+            if (TargetDecorations.has(target, "ValueFlow") || TargetDecorations.has(target, "ValueFlowFailure")
+                    || !mayMatch(target)) {
+                continue;
+            }
+            targets.add(target);
+            tasks.add(() -> MethodFlows.analyze(classNode, target.method, null));
+        }
+        if (targets.size() < 2) {
+            return;
+        }
+        List<Object> results = ParallelFlowAnalysis.run(tasks);
+        for (int i = 0; i < targets.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof MethodFlows) {
+                TargetDecorations.put(targets.get(i), "ValueFlow", result);
+            } else if (result instanceof AnalysisBudgetException) {
+                TargetDecorations.put(targets.get(i), "ValueFlowFailure", result);
+            }
+            // Anything else will happen again when the target is looked up, and be reported from there.
+        }
+    }
+
+    /**
+     * Whether to only analyse the statements around the injector's slice rather than the whole target. The local types
+     * still take a pass over the whole method, so this is only worth it for a small slice, and only until the slices of
+     * a target have cost about as much as a full analysis which every injector could have shared.
+     */
+    private static boolean shouldAnalyzeSlice(Target target, InsnList slice) {
+        int methodSize = target.method.instructions.size();
+        int cost = methodSize / 2 + slice.size();
+        int spent = TargetDecorations.getOrPut(target, "SliceAnalysisCost", () -> 0);
+        if (slice.size() * 4 > methodSize || spent + cost > methodSize) {
+            return false;
+        }
+        TargetDecorations.put(target, "SliceAnalysisCost", spent + cost);
+        return true;
+    }
+
     private void initialize(Target target) {
         checkDeclaredMinVersion();
         initialized = true;
@@ -176,6 +303,42 @@ public class ExpressionInjectionPoint extends InjectionPoint {
         contextType = selectContextType();
     }
 
+    /**
+     * Looks for the members each expression needs in the target's instructions, which is far cheaper than analysing
+     * the value flow only to find that none of them can match.
+     */
+    private boolean mayMatch(Target target) {
+        if (!pool.canSkipMatching()) {
+            return true;
+        }
+        InsnList insns = target.method.instructions;
+        Map<String, Boolean> present = new HashMap<>();
+        for (Expression expr : expressions) {
+            boolean possible = true;
+            for (String id : expr.getRequiredMembers()) {
+                if (!present.computeIfAbsent(id, k -> pool.memberMayOccurIn(k, insns))) {
+                    possible = false;
+                    break;
+                }
+            }
+            if (possible) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Logs what {@link ExpressionProfiler} has recorded so far. This happens at shutdown anyway when profiling is enabled,
+     * but can be called once startup is done to see the results sooner.
+     */
+    public static void logProfile() {
+        MixinExtrasLogger logger = MixinExtrasLogger.get("ExpressionProfile");
+        for (String line : ExpressionProfiler.getSummary()) {
+            logger.info(line);
+        }
+    }
+
     public static void withContext(InjectionInfo info, Runnable runnable) {
         InjectionInfo oldInfo = CURRENT_INFO;
         List<Target> oldTargets = CURRENT_TARGETS;
@@ -14,6 +14,25 @@ class FieldDef implements SimpleMemberDefinition {
         this.memberInfo = CompatibilityHelper.parseMemberInfo(field, info);
     }
 
+    @Override
+    public String getName() {
+        String name = memberInfo.getName();
+        return name == null || name.contains("*") ? null : name;
+    }
+
+    @Override
+    public String getSharingKey() {
+        return "field " + memberInfo;
+    }
+
+    @Override
+    public String getExactKey() {
+        if (memberInfo.owner == null || memberInfo.name == null || memberInfo.desc == null || getName() == null) {
+            return null;
+        }
+        return MemberKeys.field(memberInfo.owner, memberInfo.name, memberInfo.desc);
+    }
+
     @Override
     public boolean matches(AbstractInsnNode insn) {
         if (!(insn instanceof FieldInsnNode)) {
@@ -30,6 +30,11 @@ public class LocalDef implements MemberDefinition {
         this.target = target;
     }
 
+    @Override
+    public boolean hasSideEffects() {
+        return discriminator.printLVT();
+    }
+
     @Override
     public boolean matches(FlowValue node) {
         AbstractInsnNode virtualInsn = node.getInsn();
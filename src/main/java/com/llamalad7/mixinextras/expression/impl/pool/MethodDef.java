@@ -16,6 +16,25 @@ class MethodDef implements SimpleMemberDefinition {
         this.memberInfo = CompatibilityHelper.parseMemberInfo(method, info);
     }
 
+    @Override
+    public String getName() {
+        String name = memberInfo.getName();
+        return name == null || name.contains("*") ? null : name;
+    }
+
+    @Override
+    public String getSharingKey() {
+        return "method " + memberInfo;
+    }
+
+    @Override
+    public String getExactKey() {
+        if (memberInfo.owner == null || memberInfo.name == null || memberInfo.desc == null || getName() == null) {
+            return null;
+        }
+        return MemberKeys.method(memberInfo.owner, memberInfo.name, memberInfo.desc);
+    }
+
     @Override
     public boolean matches(AbstractInsnNode insn) {
         if (!(insn instanceof MethodInsnNode)) {
@@ -20,6 +20,11 @@ import java.lang.annotation.Target;
  * When {@code call}ing the {@code original}, you must pass everything before the {@code original} in your handler's
  * parameters. You can optionally pass different values to change what the {@code original} uses.
  * <p>
+ * As with {@link com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation @WrapOperation}, the {@code original}
+ * can instead be declared as your own functional interface matching the target method's parameters and return type.
+ * The arguments are then passed on to the next wrapper or the target method without any boxing, which is worth doing
+ * for hot methods that several people wrap.
+ * <p>
  * This chains when used by multiple people, unlike
  * {@link org.spongepowered.asm.mixin.Overwrite @Overwrite}.
  * <p>
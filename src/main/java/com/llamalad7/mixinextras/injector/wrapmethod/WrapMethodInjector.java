@@ -4,6 +4,7 @@ import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.service.MixinExtrasService;
 import com.llamalad7.mixinextras.sugar.impl.ShareInfo;
 import com.llamalad7.mixinextras.utils.CompatibilityHelper;
+import com.llamalad7.mixinextras.utils.OperationUtils;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 import org.spongepowered.asm.mixin.injection.code.Injector;
@@ -26,12 +27,17 @@ public class WrapMethodInjector extends Injector {
     @Override
     protected void inject(Target target, InjectionNode node) {
         this.checkTargetModifiers(target, true);
-        this.checkSignature(target);
+        String samName = this.checkSignature(target);
         info.addCallbackInvocation(methodNode);
-        WrapMethodApplicatorExtension.offerWrapper(target, methodNode, operationType, shares);
+        Type handlerOperationType = samName != null ? methodArgs[target.arguments.length] : operationType;
+        WrapMethodApplicatorExtension.offerWrapper(target, methodNode, handlerOperationType, samName, shares);
     }
 
-    private void checkSignature(Target target) {
+    /**
+     * @return the name of the method to implement if the handler takes a typed operation, or {@code null} if it takes
+     * an {@link Operation}
+     */
+    private String checkSignature(Target target) {
         InjectorData handler = new InjectorData(target, "method wrapper");
         String description = String.format("%s %s %s from %s", this.annotationType, handler, this, CompatibilityHelper.getMixin(info));
 
@@ -61,7 +67,10 @@ public class WrapMethodInjector extends Injector {
             }
             checkCoerce(argIndex, theirType, description, true);
         }
-        if (argIndex >= methodArgs.length || !methodArgs[argIndex++].equals(operationType)) {
+        Type handlerOperationType = argIndex < methodArgs.length ? methodArgs[argIndex++] : null;
+        String samName = handlerOperationType == null || handlerOperationType.equals(operationType) ? null :
+                OperationUtils.getTypedOperationMethod(handlerOperationType, Type.getMethodDescriptor(target.returnType, target.arguments));
+        if (handlerOperationType == null || samName == null && !handlerOperationType.equals(operationType)) {
             throw CompatibilityHelper.makeInvalidInjectionException(
                     info,
                     String.format(
@@ -105,5 +114,6 @@ public class WrapMethodInjector extends Injector {
             }
             shares.add(share);
         }
+        return samName;
     }
 }
@@ -104,13 +104,15 @@ public abstract class WrapMethodStage {
         private final WrapMethodStage inner;
         private final MethodNode handler;
         private final Type operationType;
+        private final String samName;
         private final List<ShareInfo> shares;
         private final boolean isStatic;
 
-        public Wrapper(WrapMethodStage inner, MethodNode handler, Type operationType, List<ShareInfo> shares) {
+        public Wrapper(WrapMethodStage inner, MethodNode handler, Type operationType, String samName, List<ShareInfo> shares) {
             this.inner = inner;
             this.handler = handler;
             this.operationType = operationType;
+            this.samName = samName;
             this.shares = shares;
             this.isStatic = Bytecode.isStatic(handler);
         }
@@ -159,16 +161,24 @@ public abstract class WrapMethodStage {
                     newShares.stream()
                             .map(it -> it.getShareType().getImplType())
                             .toArray(Type[]::new);
-            OperationUtils.makeOperation(
-                    operationArgs, returnType, insns, !isStatic, trailing,
-                    targetClass, operationType, inner.name,
-                    (paramArrayIndex, loadArgs) -> {
-                        InsnList call = new InsnList();
-                        loadArgs.accept(call);
-                        call.add(ASMUtils.getInvokeInstruction(targetClass, inner));
-                        return call;
-                    }
-            );
+            OperationUtils.OperationContents contents = (loadArg, loadArgs) -> {
+                InsnList call = new InsnList();
+                loadArgs.accept(call);
+                call.add(ASMUtils.getInvokeInstruction(targetClass, inner));
+                return call;
+            };
+            if (samName != null) {
+                // The args and return value go straight through to the inner method without being boxed.
+                OperationUtils.makeTypedOperation(
+                        operationArgs, returnType, insns, !isStatic, trailing,
+                        targetClass, operationType, samName, inner.name, contents
+                );
+            } else {
+                OperationUtils.makeOperation(
+                        operationArgs, returnType, insns, !isStatic, trailing,
+                        targetClass, operationType, inner.name, contents
+                );
+            }
 
             // Load any `@Share`s that the handler method wants:
             loadShares(shares, insns);
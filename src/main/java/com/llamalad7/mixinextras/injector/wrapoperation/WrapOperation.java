@@ -98,6 +98,12 @@ import java.lang.annotation.Target;
  * When {@code call}ing the {@code original}, you must pass everything before the {@code original} in your handler's
  * parameters. You can optionally pass different values to change what the {@code original} uses.
  * <p>
+ * Instead of {@link Operation}, the {@code original} can be declared as your own functional interface whose single
+ * abstract method takes exactly the parameters before it and returns exactly the wrapped operation's type, e.g.
+ * {@code interface IntDoubleOp { double apply(int a, double b); }}. Calling it then doesn't need an array or any boxing,
+ * which can matter for very hot operations. The interface must be loadable from the target class, so it can't be in a
+ * mixin package.
+ * <p>
  * This chains when used by multiple people, unlike
  * {@link org.spongepowered.asm.mixin.injection.Redirect @Redirect} and
  * {@link org.spongepowered.asm.mixin.injection.ModifyConstant @ModifyConstant}.
@@ -9,6 +9,7 @@ import com.llamalad7.mixinextras.service.MixinExtrasService;
 import com.llamalad7.mixinextras.utils.*;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
@@ -20,6 +21,7 @@ import org.spongepowered.asm.util.Bytecode;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 class WrapOperationInjector extends Injector {
     private final Type operationType = MixinExtrasService.getInstance().changePackage(Operation.class, Type.getType(CompatibilityHelper.getAnnotation(info).desc), WrapOperation.class);
@@ -59,6 +61,10 @@ class WrapOperationInjector extends Injector {
                         )
                 );
         this.wrapOperation(target, operation, stack);
+        if (operation.node != node) {
+            // The next wrapper will find the handler call through the node we were given.
+            node.decorate(Decorations.FUSABLE_OPERATION, operation.node.getDecoration(Decorations.FUSABLE_OPERATION));
+        }
     }
 
     private void wrapOperation(Target target, OperationType operation, StackExtension stack) {
@@ -84,7 +90,17 @@ class WrapOperationInjector extends Injector {
             argTypes = ArrayUtils.remove(argTypes, 0);
         }
         Type[] originalArgs = getOriginalArgTypes(node);
-        this.validateParams(handler, returnType, ArrayUtils.add(originalArgs, operationType));
+        Type handlerOperationType = originalArgs.length < methodArgs.length ? methodArgs[originalArgs.length] : null;
+        String samName = handlerOperationType == null || handlerOperationType.equals(operationType) ? null :
+                OperationUtils.getTypedOperationMethod(handlerOperationType, Type.getMethodDescriptor(returnType, originalArgs));
+        this.validateParams(handler, returnType, ArrayUtils.add(originalArgs, samName != null ? handlerOperationType : operationType));
+
+        InvokeDynamicInsnNode innerOperation = getFusableOperation(target, node, argTypes, originalArgs.length, hasExtraThis);
+        if (innerOperation != null) {
+            // The bridge will make the inner wrapper's operation itself, so it no longer needs making here.
+            OperationUtils.removeFusedOperation(target.insns, innerOperation);
+            argTypes = ArrayUtils.remove(argTypes, originalArgs.length);
+        }
 
         // Store *all* the args, including ones added by redirectors and previous operation wrappers.
         // Excess ones will be bound to the lambda.
@@ -102,9 +118,21 @@ class WrapOperationInjector extends Injector {
         if (hasExtraThis) {
             insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
         }
-        this.pushArgs(argTypes, insns, argMap, originalArgs.length, argMap.length);
         // The trailing params are any arguments which come after the original args, and should therefore be bound to the lambda.
-        this.makeOperation(operation, originalArgs, returnType, insns, hasExtraThis, ArrayUtils.subarray(argTypes, originalArgs.length, argTypes.length));
+        Type[] trailingParams = ArrayUtils.subarray(argTypes, originalArgs.length, argTypes.length);
+        this.pushArgs(argTypes, insns, argMap, originalArgs.length, argMap.length);
+        boolean reusesOperation = OperationUtils.reusesOperation(hasExtraThis, trailingParams, classNode);
+        if (reusesOperation) {
+            stack.extra(2);
+        }
+        if (samName != null) {
+            this.makeTypedOperation(operation, originalArgs, returnType, insns, hasExtraThis, trailingParams, innerOperation, handlerOperationType, samName);
+        } else {
+            this.makeOperation(operation, originalArgs, returnType, insns, hasExtraThis, trailingParams, innerOperation);
+        }
+        // With nothing bound, the operation is made by a lone INDY which at most captures the receiver.
+        boolean fusable = trailingParams.length == 0 && !reusesOperation;
+        AbstractInsnNode madeOperation = insns.getLast();
         if (handler.captureTargetArgs > 0) {
             this.pushArgs(target.arguments, insns, target.getArgIndices(), 0, handler.captureTargetArgs);
         }
@@ -115,15 +143,52 @@ class WrapOperationInjector extends Injector {
 
         AbstractInsnNode result = super.invokeHandler(insns);
         InjectorUtils.coerceReturnType(handler, insns, returnType);
+        if (fusable && madeOperation instanceof InvokeDynamicInsnNode) {
+            node.decorate(Decorations.FUSABLE_OPERATION, Pair.of(result, (InvokeDynamicInsnNode) madeOperation));
+        }
         return result;
     }
 
-    private void makeOperation(OperationType operation, Type[] argTypes, Type returnType, InsnList insns, boolean hasExtraThis, Type[] trailingParams) {
+    /**
+     * When the operation we would bind to our own comes straight from an inner {@link WrapOperation} and captures
+     * nothing but the receiver, our bridge can make it itself instead. Our operation then captures no more than the
+     * inner one did, so a whole stack of wrappers costs no more allocations to set up than a single one.
+     */
+    private static InvokeDynamicInsnNode getFusableOperation(Target target, InjectionNode node, Type[] argTypes, int operationIndex, boolean virtual) {
+        Pair<AbstractInsnNode, InvokeDynamicInsnNode> inner = node.getDecoration(Decorations.FUSABLE_OPERATION);
+        if (inner == null || operationIndex >= argTypes.length || inner.getLeft() != node.getCurrentTarget()) {
+            return null;
+        }
+        InvokeDynamicInsnNode makeOperation = inner.getRight();
+        if (!target.insns.contains(makeOperation) || !Type.getReturnType(makeOperation.desc).equals(argTypes[operationIndex])) {
+            return null;
+        }
+        return OperationUtils.canFuse(makeOperation, virtual) ? makeOperation : null;
+    }
+
+    private void makeOperation(OperationType operation, Type[] argTypes, Type returnType, InsnList insns, boolean hasExtraThis, Type[] trailingParams, InvokeDynamicInsnNode innerOperation) {
         OperationUtils.makeOperation(
-                argTypes, returnType, insns, hasExtraThis, trailingParams, classNode, operationType, operation.getName(),
-                (paramArrayIndex, loadArgs) -> {
+                argTypes, returnType, insns, hasExtraThis, trailingParams, innerOperation, classNode, operationType,
+                operation.getName(),
+                (loadArg, loadArgs) -> {
+                    InsnList copied = new InsnList();
+                    operation.copyNode(copied, loadArg, loadArgs, returnType);
+                    return copied;
+                }
+        );
+    }
+
+    /**
+     * The handler has asked for its own functional interface instead of {@link Operation}, so the operation can take
+     * and return the exact types without boxing them or putting them in an array.
+     */
+    private void makeTypedOperation(OperationType operation, Type[] argTypes, Type returnType, InsnList insns, boolean hasExtraThis, Type[] trailingParams, InvokeDynamicInsnNode innerOperation, Type typedOperationType, String samName) {
+        OperationUtils.makeTypedOperation(
+                argTypes, returnType, insns, hasExtraThis, trailingParams, innerOperation, classNode, typedOperationType, samName,
+                operation.getName(),
+                (loadArg, loadArgs) -> {
                     InsnList copied = new InsnList();
-                    operation.copyNode(copied, paramArrayIndex, loadArgs, returnType);
+                    operation.copyNode(copied, loadArg, loadArgs, returnType);
                     return copied;
                 }
         );
@@ -245,7 +310,7 @@ class WrapOperationInjector extends Injector {
 
         abstract String getName();
 
-        void copyNode(InsnList insns, int paramArrayIndex, Consumer<InsnList> loadArgs, Type returnType) {
+        void copyNode(InsnList insns, ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs, Type returnType) {
             loadArgs.accept(insns);
             insns.add(currentTarget.clone(Collections.emptyMap()));
             AbstractInsnNode coerceCast = InjectorUtils.findCoerce(node, returnType);
@@ -343,10 +408,10 @@ class WrapOperationInjector extends Injector {
         }
 
         @Override
-        void copyNode(InsnList insns, int paramArrayIndex, Consumer<InsnList> loadArgs, Type returnType) {
+        void copyNode(InsnList insns, ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs, Type returnType) {
             insns.add(new TypeInsnNode(Opcodes.NEW, ((MethodInsnNode) currentTarget).owner));
             insns.add(new InsnNode(Opcodes.DUP));
-            super.copyNode(insns, paramArrayIndex, loadArgs, returnType);
+            super.copyNode(insns, loadArg, loadArgs, returnType);
         }
 
         @Override
@@ -399,14 +464,12 @@ class WrapOperationInjector extends Injector {
         }
 
         @Override
-        void copyNode(InsnList insns, int paramArrayIndex, Consumer<InsnList> loadArgs, Type returnType) {
-            super.copyNode(insns, paramArrayIndex, loadArgs, returnType);
+        void copyNode(InsnList insns, ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs, Type returnType) {
+            super.copyNode(insns, loadArg, loadArgs, returnType);
             // We have a Class object and need to get it back to a boolean using the first element of the lambda args.
             // The code added by RedirectInjector expects a reference to the checked object already on the stack, so we
             // load the first and only lambda arg, and then swap it with the Class<?> result from the redirector.
-            insns.add(new VarInsnNode(Opcodes.ALOAD, paramArrayIndex));
-            insns.add(new InsnNode(Opcodes.ICONST_0));
-            insns.add(new InsnNode(Opcodes.AALOAD));
+            loadArg.accept(insns, 0);
             insns.add(new InsnNode(Opcodes.SWAP));
             // We need to encompass all the extra logic added by RedirectInjector
             PreviousInjectorInsns.DYNAMIC_INSTANCEOF_REDIRECT.moveNodes(target.insns, insns, currentTarget);
@@ -433,8 +496,8 @@ class WrapOperationInjector extends Injector {
         }
 
         @Override
-        void copyNode(InsnList insns, int paramArrayIndex, Consumer<InsnList> loadArgs, Type returnType) {
-            super.copyNode(insns, paramArrayIndex, loadArgs, returnType);
+        void copyNode(InsnList insns, ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs, Type returnType) {
+            super.copyNode(insns, loadArg, loadArgs, returnType);
             // We need to encompass the null check added by RedirectInjector.
             PreviousInjectorInsns.DUPED_FACTORY_REDIRECT.moveNodes(target.insns, insns, currentTarget);
         }
@@ -462,9 +525,9 @@ class WrapOperationInjector extends Injector {
         }
 
         @Override
-        void copyNode(InsnList insns, int paramArrayIndex, Consumer<InsnList> loadArgs, Type returnType) {
+        void copyNode(InsnList insns, ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs, Type returnType) {
             if (isWrapped) {
-                super.copyNode(insns, paramArrayIndex, loadArgs, returnType);
+                super.copyNode(insns, loadArg, loadArgs, returnType);
                 // Encompass the extra branching we added ourselves
                 PreviousInjectorInsns.COMPARISON_WRAPPER.moveNodes(target.insns, insns, currentTarget);
                 if (!comparison.jumpOnTrue) {
@@ -2,13 +2,13 @@ package com.llamalad7.mixinextras.sugar.impl;
 
 import com.llamalad7.mixinextras.injector.StackExtension;
 import com.llamalad7.mixinextras.sugar.impl.ref.LocalRefClassGenerator;
+import com.llamalad7.mixinextras.sugar.impl.ref.LocalRefEscapeAnalysis;
 import com.llamalad7.mixinextras.sugar.impl.ref.LocalRefUtils;
 import com.llamalad7.mixinextras.utils.Decorations;
 import com.llamalad7.mixinextras.utils.InjectorUtils;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.*;
 import org.spongepowered.asm.mixin.injection.modify.InvalidImplicitDiscriminatorException;
 import org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator;
 import org.spongepowered.asm.mixin.injection.modify.LocalVariableDiscriminator.Context;
@@ -16,9 +16,9 @@ import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
 import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.injection.struct.Target;
 import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Bytecode;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 class LocalSugarApplicator extends SugarApplicator {
     private final boolean isArgsOnly;
@@ -78,6 +78,12 @@ class LocalSugarApplicator extends SugarApplicator {
     private void initAndLoadLocalRef(Target target, InjectionNode node, int index, StackExtension stack) {
         String refName = LocalRefClassGenerator.getForType(targetLocalType);
         int refIndex = getOrCreateRef(target, node, index, refName, stack);
+        Map<Integer, List<LocalSugarApplicator>> refUsers = node.getDecoration(Decorations.LOCAL_REF_USERS);
+        if (refUsers == null) {
+            refUsers = new HashMap<>();
+            node.decorate(Decorations.LOCAL_REF_USERS, refUsers);
+        }
+        refUsers.computeIfAbsent(refIndex, k -> new ArrayList<>()).add(this);
         stack.extra(1);
         target.insns.insertBefore(node.getCurrentTarget(), new VarInsnNode(Opcodes.ALOAD, refIndex));
     }
@@ -99,6 +105,7 @@ class LocalSugarApplicator extends SugarApplicator {
         InsnList construction = new InsnList();
         LocalRefUtils.generateNew(construction, targetLocalType);
         construction.add(new VarInsnNode(Opcodes.ASTORE, refIndex));
+        AbstractInsnNode[] constructionInsns = construction.toArray();
         target.insertBefore(node, construction);
 
         SugarPostProcessingExtension.enqueuePostProcessing(this, () -> {
@@ -116,6 +123,17 @@ class LocalSugarApplicator extends SugarApplicator {
             LocalRefUtils.generateDisposal(after, targetLocalType);
             after.add(new VarInsnNode(targetLocalType.getOpcode(Opcodes.ISTORE), index));
             target.insns.insert(node.getCurrentTarget(), after);
+
+            if (isInLoop(target.insns, node.getCurrentTarget()) && !mayEscape(target, node, refIndex, refImpl)) {
+                // The same ref can be re-initialized for every call, so there's no need to make a new one each time
+                // round the loop.
+                InsnList hoisted = new InsnList();
+                for (AbstractInsnNode insn : constructionInsns) {
+                    target.insns.remove(insn);
+                    hoisted.add(insn);
+                }
+                target.insns.insert(hoisted);
+            }
         });
 
         // This covers the init and dispose calls, as well as at least the 2 stack entries for the initialization.
@@ -125,4 +143,69 @@ class LocalSugarApplicator extends SugarApplicator {
         refIndices.put(index, refIndex);
         return refIndex;
     }
+
+    /**
+     * Conservatively, whether there is a backwards jump over the given instruction.
+     */
+    private static boolean isInLoop(InsnList insns, AbstractInsnNode insn) {
+        int index = insns.indexOf(insn);
+        for (AbstractInsnNode jump = insn.getNext(); jump != null; jump = jump.getNext()) {
+            List<LabelNode> labels;
+            if (jump instanceof JumpInsnNode) {
+                labels = Collections.singletonList(((JumpInsnNode) jump).label);
+            } else if (jump instanceof TableSwitchInsnNode) {
+                labels = new ArrayList<>(((TableSwitchInsnNode) jump).labels);
+                labels.add(((TableSwitchInsnNode) jump).dflt);
+            } else if (jump instanceof LookupSwitchInsnNode) {
+                labels = new ArrayList<>(((LookupSwitchInsnNode) jump).labels);
+                labels.add(((LookupSwitchInsnNode) jump).dflt);
+            } else {
+                continue;
+            }
+            for (LabelNode label : labels) {
+                if (insns.indexOf(label) <= index) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether anything could still have hold of the ref once a handler call has finished with it. The target method
+     * may only initialize and dispose of it and pass it to our handlers, which in turn may only get and set it.
+     */
+    private static boolean mayEscape(Target target, InjectionNode node, int refIndex, String refImpl) {
+        Map<Integer, List<LocalSugarApplicator>> refUsers = node.getDecoration(Decorations.LOCAL_REF_USERS);
+        List<LocalSugarApplicator> users = refUsers.get(refIndex);
+        for (LocalSugarApplicator user : users) {
+            MethodNode handler = user.info.getMethod();
+            String refType = user.paramType.getInternalName();
+            boolean handlerLeaks = LocalRefEscapeAnalysis.mayEscape(
+                    target.classNode.name, handler, user.paramLvtIndex,
+                    (call, argIndex) -> argIndex == 0 && call.owner.equals(refType)
+                            && (call.name.equals("get") || call.name.equals("set"))
+            );
+            if (handlerLeaks) {
+                return true;
+            }
+        }
+        return LocalRefEscapeAnalysis.mayEscape(
+                target.classNode.name, target.method, refIndex,
+                (call, argIndex) -> {
+                    if (call.owner.equals(refImpl)) {
+                        return argIndex == 0 && (call.name.equals("init") || call.name.equals("dispose"));
+                    }
+                    for (LocalSugarApplicator user : users) {
+                        MethodNode handler = user.info.getMethod();
+                        int handlerArgIndex = Bytecode.isStatic(handler) ? user.paramIndex : user.paramIndex + 1;
+                        if (call.owner.equals(target.classNode.name) && call.name.equals(handler.name)
+                                && call.desc.equals(handler.desc) && argIndex == handlerArgIndex) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+        );
+    }
 }
@@ -0,0 +1,138 @@
+package com.llamalad7.mixinextras.sugar.impl.ref;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+import org.spongepowered.asm.util.asm.ASM;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out whether the ref held in a local variable could end up anywhere other than that local and the calls we allow
+ * it to be passed to, e.g. by being put in a field, returned, or handed to some other method. Refs which can't escape
+ * are safe to reuse between handler calls, since nothing can still be holding on to them afterwards.
+ */
+public class LocalRefEscapeAnalysis {
+    @FunctionalInterface
+    public interface AllowedUse {
+        /**
+         * @param argIndex the index of the argument the ref is passed as, counting the receiver (if any) as 0
+         */
+        boolean test(MethodInsnNode call, int argIndex);
+    }
+
+    /**
+     * @return whether the value of the given local could escape, erring on the side of yes if the method can't be
+     * analysed
+     */
+    public static boolean mayEscape(String owner, MethodNode method, int lvtIndex, AllowedUse allowedUse) {
+        Set<AbstractInsnNode> refs = new HashSet<>();
+        for (AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn.getOpcode() == Opcodes.ALOAD && ((VarInsnNode) insn).var == lvtIndex) {
+                refs.add(insn);
+            }
+        }
+        if (refs.isEmpty()) {
+            return false;
+        }
+        EscapeInterpreter interpreter = new EscapeInterpreter(refs, lvtIndex, allowedUse);
+        try {
+            new Analyzer<>(interpreter).analyze(owner, method);
+        } catch (AnalyzerException e) {
+            return true;
+        }
+        return interpreter.escapes;
+    }
+
+    private static class EscapeInterpreter extends SourceInterpreter {
+        private final Set<AbstractInsnNode> refs;
+        private final int lvtIndex;
+        private final AllowedUse allowedUse;
+        private boolean escapes;
+
+        private EscapeInterpreter(Set<AbstractInsnNode> refs, int lvtIndex, AllowedUse allowedUse) {
+            super(ASM.API_VERSION);
+            this.refs = refs;
+            this.lvtIndex = lvtIndex;
+            this.allowedUse = allowedUse;
+        }
+
+        private boolean isRef(SourceValue value) {
+            for (AbstractInsnNode insn : value.insns) {
+                if (refs.contains(insn)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public SourceValue copyOperation(AbstractInsnNode insn, SourceValue value) {
+            if (isRef(value)) {
+                if (insn.getOpcode() == Opcodes.ASTORE) {
+                    // Putting it back where it came from is fine, anywhere else we'd have to follow it.
+                    escapes |= ((VarInsnNode) insn).var != lvtIndex;
+                } else {
+                    // Some form of `DUP`, the copy is just as much the ref.
+                    refs.add(insn);
+                }
+            }
+            return super.copyOperation(insn, value);
+        }
+
+        @Override
+        public SourceValue unaryOperation(AbstractInsnNode insn, SourceValue value) {
+            if (isRef(value)) {
+                switch (insn.getOpcode()) {
+                    case Opcodes.CHECKCAST:
+                        refs.add(insn);
+                        break;
+                    case Opcodes.IFNULL:
+                    case Opcodes.IFNONNULL:
+                    case Opcodes.INSTANCEOF:
+                        break;
+                    default:
+                        escapes = true;
+                }
+            }
+            return super.unaryOperation(insn, value);
+        }
+
+        @Override
+        public SourceValue binaryOperation(AbstractInsnNode insn, SourceValue value1, SourceValue value2) {
+            if (insn.getOpcode() != Opcodes.IF_ACMPEQ && insn.getOpcode() != Opcodes.IF_ACMPNE) {
+                escapes |= isRef(value1) || isRef(value2);
+            }
+            return super.binaryOperation(insn, value1, value2);
+        }
+
+        @Override
+        public SourceValue ternaryOperation(AbstractInsnNode insn, SourceValue value1, SourceValue value2, SourceValue value3) {
+            escapes |= isRef(value1) || isRef(value2) || isRef(value3);
+            return super.ternaryOperation(insn, value1, value2, value3);
+        }
+
+        @Override
+        public SourceValue naryOperation(AbstractInsnNode insn, List<? extends SourceValue> values) {
+            for (int i = 0; i < values.size(); i++) {
+                if (isRef(values.get(i))) {
+                    escapes |= !(insn instanceof MethodInsnNode) || !allowedUse.test((MethodInsnNode) insn, i);
+                }
+            }
+            return super.naryOperation(insn, values);
+        }
+
+        @Override
+        public void returnOperation(AbstractInsnNode insn, SourceValue value, SourceValue expected) {
+            escapes |= isRef(value);
+        }
+    }
+}
@@ -23,6 +23,12 @@ public class Decorations {
      */
     public static final String LOCAL_REF_MAP = "mixinextras_localRefMap";
 
+    /**
+     * Stores a map of LVT index of {@link LocalRef} -&gt; the sugars whose handlers are passed it, so it can be checked
+     * that none of them hold on to it.
+     */
+    public static final String LOCAL_REF_USERS = "mixinextras_localRefUsers";
+
     /**
      * Stores that a NEW instruction is immediately DUPed so that {@link WrapOperation} can handle it properly.
      */
@@ -38,6 +44,13 @@ public class Decorations {
      */
     public static final String WRAPPED = "mixinextras_wrappedOperation";
 
+    /**
+     * Stores the handler call made by a {@link WrapOperation}, along with the instruction which makes its operation if
+     * that binds nothing, so that a wrapper around it can make the same operation itself rather than binding it. See
+     * {@link OperationUtils#canFuse}.
+     */
+    public static final String FUSABLE_OPERATION = "mixinextras_fusableOperation";
+
     /**
      * Stores the shared CallbackInfo local index for this target instruction.
      */
@@ -17,11 +17,14 @@ import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.SignaturePrinter;
 
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class InjectorUtils {
+    private static final Map<Type, String> ARGS_ONLY_CONTEXT_KEYS = new ConcurrentHashMap<>();
+    private static final Map<Type, String> FULL_FRAME_CONTEXT_KEYS = new ConcurrentHashMap<>();
 
     public static boolean isVirtualRedirect(InjectionNode node) {
         return node.isReplaced() && node.hasDecoration("redirector") && node.getCurrentTarget().getOpcode() != Opcodes.INVOKESTATIC;
@@ -86,16 +89,21 @@ public class InjectorUtils {
 
     public static Context getOrCreateLocalContext(Target target, InjectionNode node, InjectionInfo info, Type targetType, boolean isArgsOnly) {
         String decorationKey = getLocalContextKey(targetType, isArgsOnly);
-        if (node.hasDecoration(decorationKey)) {
-            return node.getDecoration(decorationKey);
+        Context context = node.getDecoration(decorationKey);
+        if (context != null) {
+            return context;
         }
-        Context context = CompatibilityHelper.makeLvtContext(info, targetType, isArgsOnly, target, node.getCurrentTarget());
+        context = CompatibilityHelper.makeLvtContext(info, targetType, isArgsOnly, target, node.getCurrentTarget());
         node.decorate(decorationKey, context);
         return context;
     }
 
     private static String getLocalContextKey(Type targetType, boolean isArgsOnly) {
-        return String.format(Decorations.PERSISTENT + "localContext(%s,%s)", targetType, isArgsOnly ? "argsOnly" : "fullFrame");
+        Map<Type, String> keys = isArgsOnly ? ARGS_ONLY_CONTEXT_KEYS : FULL_FRAME_CONTEXT_KEYS;
+        return keys.computeIfAbsent(
+                targetType,
+                k -> Decorations.PERSISTENT + "localContext(" + k + "," + (isArgsOnly ? "argsOnly" : "fullFrame") + ")"
+        );
     }
 
     public static void printLocals(Target target, AbstractInsnNode node, Context context, LocalVariableDiscriminator discriminator, Type targetType, boolean isArgsOnly) {
@@ -122,10 +130,11 @@ public class InjectorUtils {
     }
 
     public static void decorateInjectorSpecific(InjectionNode node, InjectionInfo info, String key, Object value) {
-        if (!node.hasDecoration(key)) {
-            node.decorate(key, new HashMap<>());
-        }
         Map<InjectionInfo, Object> inner = node.getDecoration(key);
+        if (inner == null) {
+            inner = new IdentityHashMap<>();
+            node.decorate(key, inner);
+        }
         inner.put(info, value);
     }
 
@@ -6,23 +6,51 @@ import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
 import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.asm.ASM;
 
-import java.util.Arrays;
+import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 
 public class OperationUtils {
+    /**
+     * Whether to keep an operation which only captures the target instance in a field of that instance, rather than
+     * making a new one every time the wrapped code runs. This saves an allocation per call at the cost of a field per
+     * wrapped operation in every instance.
+     */
+    public static final boolean REUSE_OPERATIONS = Boolean.getBoolean("mixinextras.reuseOperations");
+
+    private static final Set<String> OBJECT_METHODS = new HashSet<>(Arrays.asList(
+            "equals(Ljava/lang/Object;)Z", "hashCode()I", "toString()Ljava/lang/String;"
+    ));
+
     public static void makeOperation(Type[] argTypes, Type returnType, InsnList insns, boolean virtual,
                                      Type[] trailingParams, ClassNode classNode, Type operationType,
                                      String name, OperationContents contents) {
+        makeOperation(argTypes, returnType, insns, virtual, trailingParams, null, classNode, operationType, name, contents);
+    }
+
+    /**
+     * Like {@link #makeOperation(Type[], Type, InsnList, boolean, Type[], ClassNode, Type, String, OperationContents)},
+     * but the bridge also makes another operation itself rather than having it bound, see {@link #canFuse}.
+     *
+     * @param innerOperation the instruction which makes the other operation, or {@code null}. The bridge runs a copy of
+     *                       it, and {@code loadArgs} passes the result to the contents between the operation's args and
+     *                       the bound params, so it must not also be one of the {@code trailingParams}.
+     */
+    public static void makeOperation(Type[] argTypes, Type returnType, InsnList insns, boolean virtual,
+                                     Type[] trailingParams, InvokeDynamicInsnNode innerOperation, ClassNode classNode,
+                                     Type operationType, String name, OperationContents contents) {
+        checkFusable(innerOperation, virtual);
         Type[] descriptorArgs = trailingParams;
         if (virtual) {
             // The receiver also needs to be a parameter in the INDY descriptor.
             descriptorArgs = ArrayUtils.add(descriptorArgs, 0, Type.getObjectType(classNode.name));
         }
-        insns.add(new InvokeDynamicInsnNode(
+        addOperation(insns, virtual, trailingParams, classNode, operationType, name, new InvokeDynamicInsnNode(
                 // The SAM method will be called `call`
                 "call",
                 // The generated lambda will implement `Operation` and have any trailing parameters bound to it
@@ -32,7 +60,7 @@ public class OperationUtils {
                 // The SAM method will take an array of args and return an `Object` (the return value of the wrapped call)
                 Type.getMethodType(Type.getType(Object.class), Type.getType(Object[].class)),
                 // The implementation method will be generated for us to handle array unpacking
-                generateSyntheticBridge(argTypes, returnType, virtual, trailingParams, name, classNode, contents),
+                generateSyntheticBridge(argTypes, returnType, virtual, trailingParams, innerOperation, name, classNode, contents),
                 // Specialization of the SAM signature
                 Type.getMethodType(
                         ASMUtils.isPrimitive(returnType) ? Type.getObjectType(returnType == Type.VOID_TYPE ? "java/lang/Void" : Bytecode.getBoxingType(returnType)) : returnType,
@@ -41,8 +69,54 @@ public class OperationUtils {
         ));
     }
 
+    /**
+     * Whether an operation made with these parameters will be {@link #REUSE_OPERATIONS reused}, in which case looking up
+     * the cached instance needs 2 extra stack slots.
+     */
+    public static boolean reusesOperation(boolean virtual, Type[] trailingParams, ClassNode classNode) {
+        // Lambdas which capture nothing are already only made once by LMF.
+        return REUSE_OPERATIONS && virtual && trailingParams.length == 0
+                // Interfaces and records can't have extra instance fields.
+                && (classNode.access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_RECORD)) == 0
+                && !"java/lang/Record".equals(classNode.superName);
+    }
+
+    private static void addOperation(InsnList insns, boolean virtual, Type[] trailingParams, ClassNode classNode,
+                                     Type operationType, String name, InvokeDynamicInsnNode makeOperation) {
+        if (!reusesOperation(virtual, trailingParams, classNode)) {
+            insns.add(makeOperation);
+            return;
+        }
+        // The operation only captures `this`, so the same one can be kept in a field and handed out every time.
+        FieldNode field = new FieldNode(
+                Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                UniquenessHelper.getUniqueFieldName(classNode, "mixinextras$operation$" + name),
+                operationType.getDescriptor(),
+                null, null
+        );
+        classNode.fields.add(field);
+        LabelNode cached = new LabelNode();
+        LabelNode done = new LabelNode();
+        // The receiver is already on the stack.
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(new FieldInsnNode(Opcodes.GETFIELD, classNode.name, field.name, field.desc));
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(new JumpInsnNode(Opcodes.IFNONNULL, cached));
+        insns.add(new InsnNode(Opcodes.POP));
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(makeOperation);
+        insns.add(new InsnNode(Opcodes.DUP_X1));
+        insns.add(new FieldInsnNode(Opcodes.PUTFIELD, classNode.name, field.name, field.desc));
+        insns.add(new JumpInsnNode(Opcodes.GOTO, done));
+        insns.add(cached);
+        insns.add(new InsnNode(Opcodes.SWAP));
+        insns.add(new InsnNode(Opcodes.POP));
+        insns.add(done);
+    }
+
     private static Handle generateSyntheticBridge(Type[] argTypes, Type returnType, boolean virtual, Type[] boundParams,
-                                                 String name, ClassNode classNode, OperationContents contents) {
+                                                 InvokeDynamicInsnNode innerOperation, String name, ClassNode classNode,
+                                                 OperationContents contents) {
         // The bridge method's args will consist of any bound parameters followed by an array
 
         MethodNode method = new MethodNode(
@@ -107,6 +181,7 @@ public class OperationUtils {
                 }
                 // We have one dangling array reference, get rid of it
                 insns.add(new InsnNode(Opcodes.POP));
+                makeInnerOperation(insns, innerOperation);
                 // Next load the bound params:
                 int boundParamIndex = virtual ? 1 : 0;
                 for (Type boundParamType : boundParams) {
@@ -114,7 +189,12 @@ public class OperationUtils {
                     boundParamIndex += boundParamType.getSize();
                 }
             };
-            add(contents.generate(paramArrayIndex, loadArgs));
+            ObjIntConsumer<InsnList> loadArg = (insns, index) -> {
+                insns.add(new VarInsnNode(Opcodes.ALOAD, paramArrayIndex));
+                insns.add(new IntInsnNode(Opcodes.BIPUSH, index));
+                insns.add(new InsnNode(Opcodes.AALOAD));
+            };
+            add(contents.generate(loadArg, loadArgs));
             if (returnType == Type.VOID_TYPE) {
                 add(new InsnNode(Opcodes.ACONST_NULL));
                 add(new TypeInsnNode(Opcodes.CHECKCAST, "java/lang/Void"));
@@ -141,8 +221,198 @@ public class OperationUtils {
         );
     }
 
+    /**
+     * Like {@link #makeOperation}, but the operation implements the handler's own functional interface, whose single
+     * abstract method takes the exact argument types and returns the exact return type. Nothing needs to be boxed or
+     * put in an array, so calling it doesn't allocate.
+     */
+    public static void makeTypedOperation(Type[] argTypes, Type returnType, InsnList insns, boolean virtual,
+                                          Type[] trailingParams, ClassNode classNode, Type operationType,
+                                          String samName, String name, OperationContents contents) {
+        makeTypedOperation(
+                argTypes, returnType, insns, virtual, trailingParams, null, classNode, operationType, samName, name,
+                contents
+        );
+    }
+
+    /**
+     * Like {@link #makeOperation(Type[], Type, InsnList, boolean, Type[], InvokeDynamicInsnNode, ClassNode, Type, String, OperationContents)},
+     * but for a typed operation.
+     */
+    public static void makeTypedOperation(Type[] argTypes, Type returnType, InsnList insns, boolean virtual,
+                                          Type[] trailingParams, InvokeDynamicInsnNode innerOperation,
+                                          ClassNode classNode, Type operationType, String samName, String name,
+                                          OperationContents contents) {
+        checkFusable(innerOperation, virtual);
+        Type[] descriptorArgs = trailingParams;
+        if (virtual) {
+            descriptorArgs = ArrayUtils.add(descriptorArgs, 0, Type.getObjectType(classNode.name));
+        }
+        Type samType = Type.getMethodType(returnType, argTypes);
+        addOperation(insns, virtual, trailingParams, classNode, operationType, name, new InvokeDynamicInsnNode(
+                samName,
+                Type.getMethodDescriptor(operationType, descriptorArgs),
+                ASMUtils.LMF_HANDLE,
+                samType,
+                generateTypedBridge(argTypes, returnType, virtual, trailingParams, innerOperation, name, classNode, contents),
+                samType
+        ));
+    }
+
+    private static Handle generateTypedBridge(Type[] argTypes, Type returnType, boolean virtual, Type[] boundParams,
+                                              InvokeDynamicInsnNode innerOperation, String name, ClassNode classNode,
+                                              OperationContents contents) {
+        // The bridge method's args will consist of any bound parameters followed by the operation's own args.
+        MethodNode method = new MethodNode(
+                ASM.API_VERSION,
+                Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | (virtual ? 0 : Opcodes.ACC_STATIC),
+                UniquenessHelper.getUniqueMethodName(classNode, "mixinextras$bridge$" + name),
+                Bytecode.generateDescriptor(returnType, ArrayUtils.addAll(boundParams, argTypes)),
+                null, null
+        );
+        int[] argIndices = new int[argTypes.length];
+        int index = Arrays.stream(boundParams).mapToInt(Type::getSize).sum() + (virtual ? 1 : 0);
+        for (int i = 0; i < argTypes.length; i++) {
+            argIndices[i] = index;
+            index += argTypes[i].getSize();
+        }
+        method.instructions = new InsnList() {{
+            if (virtual) {
+                add(new VarInsnNode(Opcodes.ALOAD, 0));
+            }
+            Consumer<InsnList> loadArgs = insns -> {
+                for (int i = 0; i < argTypes.length; i++) {
+                    insns.add(new VarInsnNode(argTypes[i].getOpcode(Opcodes.ILOAD), argIndices[i]));
+                }
+                makeInnerOperation(insns, innerOperation);
+                int boundParamIndex = virtual ? 1 : 0;
+                for (Type boundParamType : boundParams) {
+                    insns.add(new VarInsnNode(boundParamType.getOpcode(Opcodes.ILOAD), boundParamIndex));
+                    boundParamIndex += boundParamType.getSize();
+                }
+            };
+            ObjIntConsumer<InsnList> loadArg =
+                    (insns, i) -> insns.add(new VarInsnNode(argTypes[i].getOpcode(Opcodes.ILOAD), argIndices[i]));
+            add(contents.generate(loadArg, loadArgs));
+            add(new InsnNode(returnType.getOpcode(Opcodes.IRETURN)));
+        }};
+        classNode.methods.add(method);
+
+        return new Handle(
+                virtual ? Opcodes.H_INVOKESPECIAL : Opcodes.H_INVOKESTATIC,
+                classNode.name,
+                method.name,
+                method.desc,
+                (classNode.access & Opcodes.ACC_INTERFACE) != 0
+        );
+    }
+
+    /**
+     * Whether the given instruction makes an operation which a bridge can make again itself, as an
+     * {@code innerOperation}, instead of having it bound. That is the case if it is a lone INDY which captures nothing,
+     * so always gives the same operation, or which only captures the receiver, which a {@code virtual} bridge has too.
+     *
+     * @param virtual whether the bridge which would make it is an instance method
+     */
+    public static boolean canFuse(AbstractInsnNode makeOperation, boolean virtual) {
+        if (!(makeOperation instanceof InvokeDynamicInsnNode)) {
+            return false;
+        }
+        Type[] captured = Type.getArgumentTypes(((InvokeDynamicInsnNode) makeOperation).desc);
+        if (captured.length == 0) {
+            return true;
+        }
+        if (!virtual || captured.length != 1) {
+            return false;
+        }
+        AbstractInsnNode receiver = makeOperation.getPrevious();
+        return receiver != null && receiver.getOpcode() == Opcodes.ALOAD && ((VarInsnNode) receiver).var == 0;
+    }
+
+    /**
+     * Removes an operation which a bridge will now {@link #canFuse make itself} from the code which made it, along with
+     * the receiver it captured, if any.
+     */
+    public static void removeFusedOperation(InsnList insns, InvokeDynamicInsnNode makeOperation) {
+        if (Type.getArgumentTypes(makeOperation.desc).length != 0) {
+            insns.remove(makeOperation.getPrevious());
+        }
+        insns.remove(makeOperation);
+    }
+
+    private static void checkFusable(InvokeDynamicInsnNode innerOperation, boolean virtual) {
+        if (innerOperation != null && Type.getArgumentTypes(innerOperation.desc).length > (virtual ? 1 : 0)) {
+            throw new IllegalArgumentException("Inner operation " + innerOperation.name + " captures too much to be fused");
+        }
+    }
+
+    private static void makeInnerOperation(InsnList insns, InvokeDynamicInsnNode innerOperation) {
+        if (innerOperation == null) {
+            return;
+        }
+        if (Type.getArgumentTypes(innerOperation.desc).length != 0) {
+            // It only captures the receiver, which is ours too.
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        }
+        insns.add(innerOperation.clone(Collections.emptyMap()));
+    }
+
+    /**
+     * @return the name of the given interface's single abstract method if it has the given descriptor, or
+     * {@code null} if the type can't be used as a typed operation
+     */
+    public static String getTypedOperationMethod(Type type, String desc) {
+        if (type.getSort() != Type.OBJECT) {
+            return null;
+        }
+        ClassInfo info = ClassInfo.forType(type, ClassInfo.TypeLookup.DECLARED_TYPE);
+        if (info == null || !info.isInterface()) {
+            return null;
+        }
+        Map<String, ClassInfo.Method> abstractMethods = new HashMap<>();
+        Set<String> defaultMethods = new HashSet<>();
+        collectMethods(info, abstractMethods, defaultMethods, new HashSet<>());
+        abstractMethods.keySet().removeAll(defaultMethods);
+        abstractMethods.keySet().removeAll(OBJECT_METHODS);
+        if (abstractMethods.size() != 1) {
+            return null;
+        }
+        ClassInfo.Method sam = abstractMethods.values().iterator().next();
+        return sam.getDesc().equals(desc) ? sam.getName() : null;
+    }
+
+    private static void collectMethods(ClassInfo info, Map<String, ClassInfo.Method> abstractMethods,
+                                       Set<String> defaultMethods, Set<String> visited) {
+        if (!visited.add(info.getName())) {
+            return;
+        }
+        for (ClassInfo.Method method : info.getMethods()) {
+            if (method.isStatic() || method.isPrivate()) {
+                continue;
+            }
+            String key = method.getName() + method.getDesc();
+            if (method.isAbstract()) {
+                abstractMethods.put(key, method);
+            } else {
+                defaultMethods.add(key);
+            }
+        }
+        for (String itf : info.getInterfaces()) {
+            ClassInfo superInfo = ClassInfo.forName(itf);
+            if (superInfo != null) {
+                collectMethods(superInfo, abstractMethods, defaultMethods, visited);
+            }
+        }
+    }
+
     @FunctionalInterface
     public interface OperationContents {
-        InsnList generate(int paramArrayIndex, Consumer<InsnList> loadArgs);
+        /**
+         * @param loadArg loads a single argument of the operation by index. Where the arguments are passed in an array,
+         *                the value is left as an {@code Object}, so this is only meant for reference types.
+         * @param loadArgs loads every argument of the operation followed by the inner operation, if there is one, and
+         *                 then any bound parameters
+         */
+        InsnList generate(ObjIntConsumer<InsnList> loadArg, Consumer<InsnList> loadArgs);
     }
 }
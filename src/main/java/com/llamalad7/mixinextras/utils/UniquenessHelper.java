@@ -1,6 +1,7 @@
 package com.llamalad7.mixinextras.utils;
 
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 public class UniquenessHelper {
@@ -19,4 +20,20 @@ public class UniquenessHelper {
             }
         }
     }
+
+    public static String getUniqueFieldName(ClassNode classNode, String name) {
+        for (int counter = classNode.fields.size(); ; counter++) {
+            String candidate = name + '$' + counter;
+            boolean isValid = true;
+            for (FieldNode fieldNode : classNode.fields) {
+                if (fieldNode.name.equals(candidate)) {
+                    isValid = false;
+                    break;
+                }
+            }
+            if (isValid) {
+                return candidate;
+            }
+        }
+    }
 }